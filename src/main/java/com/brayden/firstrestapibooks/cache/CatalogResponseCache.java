@@ -0,0 +1,206 @@
+package com.brayden.firstrestapibooks.cache;
+
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.event.BookCatalogChangedEvent;
+import com.brayden.firstrestapibooks.service.BookService;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the complete GET /books response as ready-to-send bytes, plain JSON and gzip,
+ * so a cache hit does not touch the database, ModelMapper or Jackson.
+ * Any committed write drops the bytes and schedules a rebuild on a background thread;
+ * until the rebuild is done requests take the normal path.
+ * A rebuild that a write overtakes is discarded and tried again; while they keep being discarded (or failing)
+ * each retry waits twice as long, up to max-rebuild-delay-ms, so constant writes do not keep the database
+ * busy reading the whole catalog. The discarded counter shows when writes never leave the cache time to fill.
+ * The cache holds the whole catalog twice (JSON and gzip), so it is off by default.
+ */
+@Slf4j
+@Component
+public class CatalogResponseCache {
+    private final BookService bookService;
+    private final JsonMapper jsonMapper;
+    private final long rebuildDelayMs;
+    private final long maxRebuildDelayMs;
+    private int failedRebuilds; // in a row, only used on the rebuild thread
+    private volatile boolean enabled;
+
+    private final AtomicLong generation = new AtomicLong(); // bumped by every write
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-cache-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CatalogResponseCache(BookService bookService, JsonMapper jsonMapper,
+                                @Value("${books.catalog-cache.enabled:false}") boolean enabled,
+                                @Value("${books.catalog-cache.rebuild-delay-ms:200}") long rebuildDelayMs,
+                                @Value("${books.catalog-cache.max-rebuild-delay-ms:10000}") long maxRebuildDelayMs) {
+        this.bookService = bookService;
+        this.jsonMapper = jsonMapper;
+        this.enabled = enabled;
+        this.rebuildDelayMs = rebuildDelayMs;
+        this.maxRebuildDelayMs = maxRebuildDelayMs;
+    }
+
+    // The encoded catalog, or null when the cache is off or being rebuilt.
+    public Snapshot current() {
+        Snapshot current = enabled ? snapshot : null;
+        if (current != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return current;
+    }
+
+    // Can be switched at runtime, e.g. by the load test to compare both paths.
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            scheduleRebuild(0);
+        } else {
+            snapshot = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduleRebuild(0);
+    }
+
+    // fallbackExecution: writes that run without a transaction still invalidate
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(BookCatalogChangedEvent event) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+        // the delay lets a burst of writes share one rebuild
+        scheduleRebuild(rebuildDelayMs);
+    }
+
+    // Builds the bytes on the calling thread. Returns false if a write happened meanwhile and the result was dropped.
+    public boolean refresh() {
+        if (!enabled) {
+            return false;
+        }
+        long startGeneration = generation.get();
+        List<BookResponseDTO> books = bookService.findAllBooks();
+        byte[] json = jsonMapper.writeValueAsBytes(books);
+        Snapshot built = new Snapshot(json, gzip(json), books.size());
+        // a write that committed while we were reading may not be in the result, so it is not used
+        synchronized (this) {
+            if (!enabled) {
+                return false;
+            }
+            if (generation.get() != startGeneration) {
+                discarded.incrementAndGet();
+                return false;
+            }
+            snapshot = built;
+        }
+        rebuilds.incrementAndGet();
+        return true;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    // rebuilds thrown away because a write committed while they read the catalog
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void scheduleRebuild(long delayMs) {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuild, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuild() {
+        boolean built = false;
+        try {
+            built = refresh();
+        } catch (RuntimeException e) {
+            log.warn("Could not rebuild the catalog response cache, requests use the normal path", e);
+        }
+        failedRebuilds = built ? 0 : failedRebuilds + 1;
+        rebuildScheduled.set(false);
+        // no snapshot after a discarded or failed rebuild, or after a write that came in meanwhile;
+        // such writes did not schedule a rebuild of their own because this one was still pending
+        if (snapshot == null) {
+            scheduleRebuild(retryDelayMs());
+        }
+    }
+
+    private long retryDelayMs() {
+        if (failedRebuilds == 0) {
+            return rebuildDelayMs;
+        }
+        long delayMs = Math.max(rebuildDelayMs, 1) << Math.min(failedRebuilds, 20);
+        return Math.min(delayMs, maxRebuildDelayMs);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final int books;
+    }
+}
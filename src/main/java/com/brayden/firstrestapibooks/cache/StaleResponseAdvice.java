@@ -0,0 +1,57 @@
+package com.brayden.firstrestapibooks.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.concurrent.TimeUnit;
+
+// Tells clients that a response came from the stale-while-revalidate cache: Age is how old the result is in seconds,
+// Stale-Reason why the database was not used (slow, error, busy, circuit-open). Only there with books.stale-reads.enabled.
+@ControllerAdvice
+@ConditionalOnProperty(name = "books.stale-reads.enabled", havingValue = "true")
+public class StaleResponseAdvice implements ResponseBodyAdvice<Object> {
+    static final String STALE_REASON = "Stale-Reason";
+    private static final String AGE_ATTRIBUTE = StaleResponseAdvice.class.getName() + ".age";
+    private static final String REASON_ATTRIBUTE = StaleResponseAdvice.class.getName() + ".reason";
+
+    // false outside a web request, where a stale result could not be marked
+    public static boolean canMarkStale() {
+        return RequestContextHolder.getRequestAttributes() != null;
+    }
+
+    // Called by the service that served the stale result; does nothing outside a web request.
+    public static void markStale(StaleWhileRevalidateCache.Reason reason, long ageMillis) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(AGE_ATTRIBUTE, TimeUnit.MILLISECONDS.toSeconds(ageMillis), RequestAttributes.SCOPE_REQUEST);
+            attributes.setAttribute(REASON_ATTRIBUTE, reason.headerValue(), RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object reason = attributes == null ? null : attributes.getAttribute(REASON_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (reason != null) {
+            response.getHeaders().set(HttpHeaders.AGE, String.valueOf(attributes.getAttribute(AGE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)));
+            response.getHeaders().set(STALE_REASON, reason.toString());
+        }
+        return body;
+    }
+}
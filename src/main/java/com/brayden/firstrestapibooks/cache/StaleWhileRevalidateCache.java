@@ -0,0 +1,292 @@
+package com.brayden.firstrestapibooks.cache;
+
+import com.brayden.firstrestapibooks.concurrent.CircuitBreaker;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps the last good result per key so reads can still be answered when the database is slow or down.
+ * Every read starts a load (at most one per key at a time). When a result is stored, the load runs on a refresh
+ * thread and the read waits softTimeout for it. If the load is slower than that, fails, no refresh thread is free
+ * (e.g. they are all stuck on a hanging database) or the circuit breaker is open, the last good result is returned
+ * instead, marked stale, and a slow load carries on in the background and updates the entry when it finishes.
+ * Without a stored result the load runs on the caller's thread like a read without this cache would.
+ * Every load, and every read waiting for it, ends at refreshTimeout; a load that has not finished by then counts
+ * as a failure for the breaker. The loader should give up by then as well (StaleReadBookService sets a QueryDeadline).
+ * Memory is bounded by maxWeight (the weigher decides what a value weighs, e.g. its number of books);
+ * the least recently used entries are evicted first and entries older than maxStale are never served.
+ */
+public class StaleWhileRevalidateCache<K, V> {
+    // completes a load that could not be handed to a refresh thread; no query ran, so the breaker ignores it
+    private static final RejectedExecutionException BUSY = new RejectedExecutionException("No free refresh thread");
+
+    private final Executor refreshExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final ToLongFunction<V> weigher;
+    private final long maxWeight;
+    private final long softTimeoutNanos;
+    private final long refreshTimeoutNanos;
+    private final long maxStaleNanos;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true); // access order, guarded by itself
+    private long weight; // guarded by entries
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder fresh = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+
+    public StaleWhileRevalidateCache(Executor refreshExecutor, CircuitBreaker circuitBreaker, ToLongFunction<V> weigher,
+                                     long maxWeight, Duration softTimeout, Duration refreshTimeout, Duration maxStale) {
+        this.refreshExecutor = refreshExecutor;
+        this.circuitBreaker = circuitBreaker;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        this.softTimeoutNanos = softTimeout.toNanos();
+        this.refreshTimeoutNanos = refreshTimeout.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+    }
+
+    public Result<V> get(K key, Supplier<V> loader) {
+        Entry<V> entry = entry(key);
+        if (!circuitBreaker.tryAcquire()) {
+            return staleOrUnavailable(entry, Reason.CIRCUIT_OPEN);
+        }
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> running = loads.putIfAbsent(key, load);
+        if (running == null) {
+            running = load;
+            // the reads waiting for a load that hangs are answered at refreshTimeout and the breaker counts a failure,
+            // even while the thread running it is still stuck
+            load.orTimeout(refreshTimeoutNanos, TimeUnit.NANOSECONDS);
+            track(key, load);
+            if (entry == null) {
+                // nothing to fall back on: waiting for the database is what the read would do anyway
+                runLoad(load, loader);
+            } else if (!loadInBackground(load, loader)) {
+                // answering from the stored result beats queuing one more query behind a database that may hang
+                load.completeExceptionally(BUSY);
+            }
+        }
+        // else this read did not start a load, so the breaker trial it may have taken is handed back
+        // when the running load reports its result
+        try {
+            V value = running.get(entry == null ? refreshTimeoutNanos : softTimeoutNanos, TimeUnit.NANOSECONDS);
+            fresh.increment();
+            return new Result<>(value, null, 0);
+        } catch (TimeoutException e) {
+            return staleOrUnavailable(entry, Reason.SLOW);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return staleOrUnavailable(entry, Reason.SLOW);
+        } catch (ExecutionException e) {
+            if (e.getCause() == BUSY) {
+                return staleOrUnavailable(entry, Reason.BUSY);
+            }
+            if (entry != null && !isAnswer(e.getCause())) {
+                return staleOrUnavailable(entry, e.getCause() instanceof TimeoutException ? Reason.SLOW : Reason.ERROR);
+            }
+            throw failure(e.getCause());
+        }
+    }
+
+    // Lets the next read of every key start a new load instead of joining one that started before a write.
+    public void forgetLoads() {
+        loads.clear();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    // Only what the database did counts for the breaker: a failed or timed out load, never a busy refresh pool.
+    private void track(K key, CompletableFuture<V> load) {
+        load.whenComplete((value, error) -> {
+            loads.remove(key, load);
+            if (error == null) {
+                put(key, value);
+                circuitBreaker.recordSuccess();
+            } else if (error == BUSY) {
+                circuitBreaker.release();
+            } else if (isAnswer(error)) {
+                circuitBreaker.recordSuccess(); // e.g. a 404: the database answered
+            } else {
+                loadFailures.increment();
+                circuitBreaker.recordFailure();
+            }
+        });
+    }
+
+    // false when every refresh thread is busy
+    private boolean loadInBackground(CompletableFuture<V> load, Supplier<V> loader) {
+        try {
+            refreshExecutor.execute(() -> runLoad(load, loader));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static <V> void runLoad(CompletableFuture<V> load, Supplier<V> loader) {
+        try {
+            load.complete(loader.get());
+        } catch (Throwable t) {
+            load.completeExceptionally(t);
+        }
+    }
+
+    private Result<V> staleOrUnavailable(Entry<V> entry, Reason reason) {
+        if (entry == null) {
+            unavailable.increment();
+            throw new ApiException("The database is unavailable and there is no earlier result to serve",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        stale.increment();
+        return new Result<>(entry.value, reason, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.loadedAt));
+    }
+
+    private Entry<V> entry(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedAt > maxStaleNanos) {
+                entries.remove(key);
+                weight -= entry.weight;
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value) + 1; // + 1 so empty results count too
+        synchronized (entries) {
+            Entry<V> previous = entries.remove(key);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            if (valueWeight > maxWeight) {
+                oversized.increment(); // larger than the whole cache, never kept
+                return;
+            }
+            entries.put(key, new Entry<>(value, System.nanoTime(), valueWeight));
+            weight += valueWeight;
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // A 4xx ApiException is the application's answer to a bad request, not a database problem.
+    private static boolean isAnswer(Throwable error) {
+        return error instanceof ApiException apiException && apiException.getHttpStatus().is4xxClientError();
+    }
+
+    private static RuntimeException failure(Throwable cause) {
+        if (cause instanceof TimeoutException) {
+            return new ApiException("Timed out waiting for the database", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    public long getFresh() {
+        return fresh.sum();
+    }
+
+    public long getStale() {
+        return stale.sum();
+    }
+
+    public long getUnavailable() {
+        return unavailable.sum();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // results that were not kept because they weigh more than maxWeight
+    public long getOversized() {
+        return oversized.sum();
+    }
+
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Why a stale result was served; null in a Result means it is fresh.
+    public enum Reason {
+        SLOW, ERROR, BUSY, CIRCUIT_OPEN;
+
+        public String headerValue() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result<V> {
+        private final V value;
+        private final Reason staleReason;
+        private final long ageMillis;
+
+        public boolean isStale() {
+            return staleReason != null;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private final long weight;
+    }
+}
@@ -0,0 +1,75 @@
+package com.brayden.firstrestapibooks.concurrent;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling something that keeps failing. After failureThreshold failures in a row the breaker opens
+ * and tryAcquire() returns false for openDuration; then a single trial call is let through (half open).
+ * If it succeeds the breaker closes again, if it fails the breaker stays open for another openDuration.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialRunning;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    // the clock can be replaced in tests
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    // Every true must be followed by recordSuccess(), recordFailure() or release().
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialRunning = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialRunning) {
+                return false;
+            }
+            trialRunning = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialRunning = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+        trialRunning = false;
+    }
+
+    // Hands back a tryAcquire() that did not lead to a call, e.g. because there was no thread to make it on.
+    // It says nothing about the thing being called, so a half open breaker simply lets the next trial through.
+    public synchronized void release() {
+        trialRunning = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,54 @@
+package com.brayden.firstrestapibooks.concurrent;
+
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The time by which the database work of the current thread has to be done. A transaction that starts while
+ * a deadline is set gets the time that is left as its timeout (see TransactionConfig), and Hibernate hands that
+ * to every statement as the JDBC query timeout. A hanging query is then cancelled instead of holding the thread.
+ */
+public final class QueryDeadline {
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>(); // System.nanoTime() based
+
+    private QueryDeadline() {
+    }
+
+    // The deadline of the current thread, or null when there is none.
+    public static Long current() {
+        return CURRENT.get();
+    }
+
+    // Runs the work with the given deadline (null for none), e.g. on a shard thread.
+    public static <T> T callWith(Long deadlineNanos, Supplier<T> work) {
+        Long previous = CURRENT.get();
+        set(deadlineNanos);
+        try {
+            return work.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    // The timeout in seconds for a transaction that starts now: the configured one, cut down to what is left
+    // of the deadline. Rounded up, and 0 once the deadline has passed, which fails the first statement.
+    public static int transactionTimeout(int configuredSeconds) {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return configuredSeconds;
+        }
+        long leftNanos = Math.max(0, deadline - System.nanoTime());
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (leftNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        return configuredSeconds == TransactionDefinition.TIMEOUT_DEFAULT ? seconds : Math.min(configuredSeconds, seconds);
+    }
+
+    private static void set(Long deadlineNanos) {
+        if (deadlineNanos == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadlineNanos);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.brayden.firstrestapibooks.concurrent;
+
+import com.brayden.firstrestapibooks.exception.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time. The first caller (the leader) runs the loader on its own thread;
+ * callers that arrive with the same key while it is running wait for the leader and get the same result,
+ * or the same exception.
+ * Once the load is finished the key is free again, so results are never cached beyond the call.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    // timeout only applies to callers waiting for somebody else's load
+    public V execute(K key, Supplier<V> loader, Duration timeout) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running == null) {
+            return lead(key, mine, loader);
+        }
+        coalesced.increment();
+        return follow(running, timeout);
+    }
+
+    // Lets the next caller of every key start a fresh load instead of joining one that is already running.
+    // Callers that already joined still get the running result.
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private V lead(K key, CompletableFuture<V> mine, Supplier<V> loader) {
+        executions.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine); // only removes our own entry, not a newer one after forgetAll()
+        }
+    }
+
+    private V follow(CompletableFuture<V> running, Duration timeout) {
+        try {
+            return running.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new ApiException("Timed out waiting for the same request to finish", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException("Interrupted while waiting for the same request to finish", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            // every waiting caller sees the leader's exception, e.g. an ApiException keeps its status
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.brayden.firstrestapibooks.config;
+
+import com.brayden.firstrestapibooks.timing.RepositoryTimingInterceptor;
+import com.brayden.firstrestapibooks.timing.TimingSessionEventListener;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+// Hooks for the per-request phase timing. Nothing here is registered unless books.server-timing.enabled is on,
+// so with it off the only cost left is the RequestTiming.current() check in MapperBook.
+@Configuration
+@ConditionalOnProperty(name = "books.server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer timingSessionEvents() {
+        return properties -> properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                TimingSessionEventListener.class.getName());
+    }
+
+    // static, because BeanPostProcessors are created before the rest of the configuration
+    @Bean
+    public static BeanPostProcessor repositoryTimingPostProcessor() {
+        RepositoryTimingInterceptor interceptor = new RepositoryTimingInterceptor();
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                                    proxyFactory.addAdvice(interceptor)));
+                }
+                return bean;
+            }
+        };
+    }
+}
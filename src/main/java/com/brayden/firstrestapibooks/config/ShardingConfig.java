@@ -0,0 +1,70 @@
+package com.brayden.firstrestapibooks.config;
+
+import com.brayden.firstrestapibooks.shard.JumpHashShardRouter;
+import com.brayden.firstrestapibooks.shard.ShardRouter;
+import com.brayden.firstrestapibooks.shard.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.flyway.autoconfigure.FlywayMigrationStrategy;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    // Without books.sharding.enabled everything is on one shard: the spring.datasource database.
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        return new JumpHashShardRouter(properties.isEnabled() ? properties.getShards().size() : 1);
+    }
+
+    // Replaces the spring.datasource connection pool with one pool per shard behind a routing DataSource.
+    @Configuration
+    @ConditionalOnProperty(name = "books.sharding.enabled", havingValue = "true")
+    static class ShardDataSourceConfig {
+
+        @Bean
+        public ShardRoutingDataSource dataSource(ShardingProperties properties) {
+            if (properties.getShards().isEmpty()) {
+                throw new IllegalStateException("books.sharding.enabled is true but no books.sharding.shards are configured");
+            }
+            List<DataSource> shards = new ArrayList<>();
+            for (int i = 0; i < properties.getShards().size(); i++) {
+                ShardingProperties.Shard shard = properties.getShards().get(i);
+                HikariDataSource dataSource = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(shard.getUrl())
+                        .username(shard.getUsername())
+                        .password(shard.getPassword())
+                        .driverClassName(shard.getDriverClassName())
+                        .build();
+                dataSource.setPoolName("shard-" + i);
+                dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+                shards.add(dataSource);
+            }
+            return new ShardRoutingDataSource(shards);
+        }
+
+        // Runs the spring.flyway migrations on every shard instead of only the spring.flyway.url database.
+        @Bean
+        public FlywayMigrationStrategy shardMigrationStrategy(ShardRoutingDataSource dataSource) {
+            return flyway -> {
+                for (DataSource shard : dataSource.getShards()) {
+                    Flyway.configure(flyway.getConfiguration().getClassLoader())
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(shard)
+                            .load()
+                            .migrate();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.brayden.firstrestapibooks.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// books.sharding.* in application.properties
+@Getter
+@Setter
+@ConfigurationProperties("books.sharding")
+public class ShardingProperties {
+    private boolean enabled;
+    private int maximumPoolSize = 10; // connections per shard
+    // rejects every book write; set on all instances while POST /shards/rebalance runs
+    private boolean readOnly;
+    // the position in this list is the shard number, so new shards are only ever appended
+    private List<Shard> shards = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
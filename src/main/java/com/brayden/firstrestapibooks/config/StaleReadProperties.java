@@ -0,0 +1,20 @@
+package com.brayden.firstrestapibooks.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// books.stale-reads.* in application.properties
+@Getter
+@Setter
+@ConfigurationProperties("books.stale-reads")
+public class StaleReadProperties {
+    private boolean enabled;
+    private long maxBooks = 200_000;      // books kept over all author results; the GET /books catalog is not counted
+    private long softTimeoutMs = 1000;    // how long a read waits for the database before it takes the stored result
+    private long refreshTimeoutMs = 30_000; // after this the queries of a read are cancelled
+    private long maxStaleMs = 3_600_000;  // older results are not served
+    private int failureThreshold = 5;     // failed loads in a row that open the circuit breaker
+    private long openMs = 10_000;         // how long the breaker stays open before a trial load
+    private int refreshThreads = 4;       // background loads at a time; when all are busy the stored result is served
+}
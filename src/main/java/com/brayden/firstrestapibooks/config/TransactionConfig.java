@@ -0,0 +1,46 @@
+package com.brayden.firstrestapibooks.config;
+
+import com.brayden.firstrestapibooks.concurrent.QueryDeadline;
+import com.brayden.firstrestapibooks.timing.RequestTiming;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.transaction.autoconfigure.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+@Configuration
+public class TransactionConfig {
+
+    // Boot's JpaTransactionManager, except that transactions started under a QueryDeadline time out with it.
+    // The stale reads use this so that a query on a hanging database gives up after refresh-timeout-ms.
+    // Begin, commit and rollback are timed for the Server-Timing "tx" phase (only inside a timed request).
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager() {
+            @Override
+            protected int determineTimeout(TransactionDefinition definition) {
+                return QueryDeadline.transactionTimeout(super.determineTimeout(definition));
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+                RequestTiming.timeTransaction(() -> super.doBegin(transaction, definition));
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+                RequestTiming.timeTransaction(() -> super.doCommit(status));
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+                RequestTiming.timeTransaction(() -> super.doRollback(status));
+            }
+        };
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+}
@@ -0,0 +1,52 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/authors")
+@Tag(name = "Authors", description = "Per-author book statistics")
+public class AuthorStatsController {
+    private final AuthorStatsService authorStatsService;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get the statistics of every author", description = "Book count and average, min and max price per author")
+    @ApiResponse(responseCode = "200", description = "Statistics successfully retrieved")
+    public List<AuthorStatsDTO> findAll() {
+        return authorStatsService.findAll();
+    }
+
+    @GetMapping("/{author}/stats")
+    @Operation(summary = "Get the statistics of one author", description = "Read from the summary table, so the cost does not grow with the number of books")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics successfully retrieved"),
+            @ApiResponse(responseCode = "404", description = "No books by that author")
+    })
+    public AuthorStatsDTO findByAuthor(
+            @Parameter(description = "Name of the author", required = true)
+            @PathVariable String author) {
+        return authorStatsService.findByAuthor(author);
+    }
+
+    @PostMapping("/stats/rebuild")
+    @Operation(summary = "Recomputes the statistics of every author from the book table",
+            description = "Returns the number of authors. Only needed if the table was changed outside this API")
+    @ApiResponse(responseCode = "200", description = "Statistics rebuilt")
+    public int rebuild() {
+        return authorStatsService.rebuild();
+    }
+}
@@ -1,23 +1,40 @@
 package com.brayden.firstrestapibooks.controller;
 
+import com.brayden.firstrestapibooks.cache.CatalogResponseCache;
+import com.brayden.firstrestapibooks.dto.BookIdsRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
 import com.brayden.firstrestapibooks.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -26,12 +43,51 @@ import java.util.List;
 @Tag(name = "Books", description = "API for managing books")
 public class BookController {
     private final BookService bookService;
+    private final CatalogResponseCache catalogResponseCache;
 
     @GetMapping
     @Operation(summary = "Get the list of all books", description = "Returns a list of all the books in the database")
-    @ApiResponse(responseCode = "200", description = "Books successfully retrieved")
-    public List<BookResponseDTO> findAllBooks() {
-        return bookService.findAllBooks();
+    @ApiResponse(responseCode = "200", description = "Books successfully retrieved",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = BookResponseDTO.class))))
+    public ResponseEntity<?> findAllBooks(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // when the catalog response cache is on and up to date, the pre-encoded bytes are sent as they are
+        CatalogResponseCache.Snapshot snapshot = catalogResponseCache.current();
+        if (snapshot == null) {
+            return ResponseEntity.ok(bookService.findAllBooks());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+        }
+        return response.body(snapshot.getJson());
+    }
+
+    // params = "ids" makes Spring pick this method instead of findAllBooks when ?ids= is present
+    @GetMapping(params = "ids")
+    @Operation(summary = "Get many books by their IDs", description = "Comma separated or repeated ids. Use POST /books/multi-get for long lists")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found books in request order, unknown ids in notFound"),
+            @ApiResponse(responseCode = "400", description = "Too many ids")
+    })
+    public BookMultiGetResponseDTO findByIds(
+            @Parameter(description = "IDs of the books, e.g. ids=1,2,3", required = true)
+            @RequestParam List<String> ids) {
+        return bookService.findByIds(ids);
+    }
+
+    @PostMapping("/multi-get")
+    @Operation(summary = "Get many books by their IDs", description = "Same as GET /books?ids=..., for lists too long for a URL")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found books in request order, unknown ids in notFound"),
+            @ApiResponse(responseCode = "400", description = "Missing or too many ids")
+    })
+    public BookMultiGetResponseDTO findByIdsPost(@RequestBody BookIdsRequestDTO request) {
+        if (request.getIds() == null) {
+            throw new ApiException("ids is required", HttpStatus.BAD_REQUEST);
+        }
+        return bookService.findByIds(request.getIds());
     }
 
     @GetMapping("/author/{author}")
@@ -72,4 +128,50 @@ public class BookController {
             @PathVariable String id) {
         bookService.deleteBook(id);
     }
+
+    // The body is handed to the service as a stream, so the file is parsed while it is being uploaded.
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Imports books from a CSV body",
+            description = "The first row is a header with a 'name' column and optional 'author' and 'price' columns")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rows imported, rejected rows are listed with their line numbers"),
+            @ApiResponse(responseCode = "400", description = "Missing header or unreadable file")
+    })
+    public BookImportResultDTO importBooks(InputStream csv) {
+        return bookService.importBooks(csv);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Imports books from an uploaded CSV file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rows imported, rejected rows are listed with their line numbers"),
+            @ApiResponse(responseCode = "400", description = "Missing header or unreadable file")
+    })
+    public BookImportResultDTO importBooksFile(
+            @Parameter(description = "CSV file with a header row", required = true)
+            @RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream csv = file.getInputStream()) {
+            return bookService.importBooks(csv);
+        }
+    }
+
+    // true for "gzip" in Accept-Encoding unless it is turned off with q=0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim().replace(" ", "");
+                    if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,52 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.cache.CatalogResponseCache;
+import com.brayden.firstrestapibooks.dto.CatalogCacheStatsDTO;
+import com.brayden.firstrestapibooks.dto.CoalescingStatsDTO;
+import com.brayden.firstrestapibooks.dto.StaleReadStatsDTO;
+import com.brayden.firstrestapibooks.service.CoalescingMetrics;
+import com.brayden.firstrestapibooks.service.StaleReadMetrics;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/metrics")
+@Tag(name = "Metrics", description = "Counters of the read path")
+public class MetricsController {
+    private final CoalescingMetrics coalescingMetrics;
+    private final CatalogResponseCache catalogResponseCache;
+    private final StaleReadMetrics staleReadMetrics;
+
+    @GetMapping("/coalescing")
+    @Operation(summary = "Get the request coalescing counters", description = "Counts since startup of reads that ran a query and reads that shared one")
+    @ApiResponse(responseCode = "200", description = "Counters successfully retrieved")
+    public CoalescingStatsDTO coalescing() {
+        return coalescingMetrics.coalescingStats();
+    }
+
+    @GetMapping("/catalog-cache")
+    @Operation(summary = "Get the catalog response cache counters", description = "Hits, misses, rebuilds and discarded rebuilds of the pre-encoded GET /books response since startup")
+    @ApiResponse(responseCode = "200", description = "Counters successfully retrieved")
+    public CatalogCacheStatsDTO catalogCache() {
+        CatalogCacheStatsDTO stats = new CatalogCacheStatsDTO();
+        stats.setEnabled(catalogResponseCache.isEnabled());
+        stats.setHits(catalogResponseCache.getHits());
+        stats.setMisses(catalogResponseCache.getMisses());
+        stats.setRebuilds(catalogResponseCache.getRebuilds());
+        stats.setDiscarded(catalogResponseCache.getDiscarded());
+        return stats;
+    }
+
+    @GetMapping("/stale-reads")
+    @Operation(summary = "Get the stale-while-revalidate counters", description = "Fresh and stale reads since startup, stored results and the circuit breaker state")
+    @ApiResponse(responseCode = "200", description = "Counters successfully retrieved")
+    public StaleReadStatsDTO staleReads() {
+        return staleReadMetrics.staleReadStats();
+    }
+}
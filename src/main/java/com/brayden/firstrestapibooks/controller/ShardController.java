@@ -0,0 +1,44 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.dto.ShardRebalanceResultDTO;
+import com.brayden.firstrestapibooks.dto.ShardStatsDTO;
+import com.brayden.firstrestapibooks.service.ShardService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/shards")
+@Tag(name = "Shards", description = "Placement of the books across the shard databases")
+public class ShardController {
+    private final ShardService shardService;
+
+    @GetMapping
+    @Operation(summary = "Get the number of books on every shard",
+            description = "Also counts the authors that are on the wrong shard and would be moved by a rebalance")
+    @ApiResponse(responseCode = "200", description = "Shard statistics successfully retrieved")
+    public List<ShardStatsDTO> findShardStats() {
+        return shardService.findShardStats();
+    }
+
+    @PostMapping("/rebalance")
+    @Operation(summary = "Moves books to the shard their author belongs on",
+            description = "Run after adding a shard to books.sharding.shards, with books.sharding.read-only=true on every instance."
+                    + " Also removes copies left by book updates that stopped halfway. Safe to run again if it stopped halfway")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Books moved"),
+            @ApiResponse(responseCode = "409", description = "books.sharding.read-only is not set")
+    })
+    public ShardRebalanceResultDTO rebalance() {
+        return shardService.rebalance();
+    }
+}
@@ -0,0 +1,123 @@
+package com.brayden.firstrestapibooks.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV (RFC 4180: comma separated, double quotes for quoting, "" for a quote inside a field)
+ * one record at a time, so the whole file never has to be in memory.
+ * A record that is longer than {@code maxRecordLength} characters is skipped and returned with an error.
+ */
+public class CsvReader {
+    private static final int EOF = -1;
+    private static final int BYTE_ORDER_MARK = '\uFEFF'; // Excel puts this at the start of UTF-8 files
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private long line = 1; // line the next character is on
+    private int pushedBack;
+    private boolean hasPushedBack;
+    private boolean started;
+
+    public CsvReader(Reader reader, int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    // Returns the next record, or null at the end of the input. Blank lines are skipped.
+    public CsvRecord next() throws IOException {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            consumeLineBreak(c);
+            c = read();
+        }
+        if (c == EOF) {
+            return null;
+        }
+
+        long startLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = 0;
+        boolean quoted = false;
+        boolean badQuote = false;
+
+        while (c != EOF) {
+            if (quoted) {
+                if (c == '"') {
+                    int after = read();
+                    if (after != '"') {
+                        // closing quote: only a separator, a line break or the end may follow it
+                        quoted = false;
+                        badQuote |= after != ',' && after != '\n' && after != '\r' && after != EOF;
+                        c = after;
+                        continue;
+                    }
+                } else if (c == '\n' || c == '\r') {
+                    consumeLineBreak(c);
+                    c = '\n';
+                }
+                length++;
+                if (length <= maxRecordLength) {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                length++;
+                if (length <= maxRecordLength) {
+                    fields.add(field.toString());
+                }
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                consumeLineBreak(c);
+                break;
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else {
+                badQuote |= c == '"';
+                length++;
+                if (length <= maxRecordLength) {
+                    field.append((char) c);
+                }
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+
+        if (length > maxRecordLength) {
+            return new CsvRecord(startLine, List.of(), "record is longer than " + maxRecordLength + " characters");
+        }
+        if (quoted || badQuote) {
+            return new CsvRecord(startLine, List.of(), "malformed quotes");
+        }
+        return new CsvRecord(startLine, fields, null);
+    }
+
+    // Counts a line break and swallows the \n of a \r\n pair.
+    private void consumeLineBreak(int c) throws IOException {
+        line++;
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n') {
+                pushedBack = next;
+                hasPushedBack = true;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (hasPushedBack) {
+            hasPushedBack = false;
+            return pushedBack;
+        }
+        int c = reader.read();
+        if (!started) {
+            started = true;
+            if (c == BYTE_ORDER_MARK) {
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+}
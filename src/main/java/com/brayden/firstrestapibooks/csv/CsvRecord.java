@@ -0,0 +1,14 @@
+package com.brayden.firstrestapibooks.csv;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CsvRecord {
+    private final long line; // line in the file where the record starts
+    private final List<String> fields;
+    private final String error; // null when the record could be parsed
+}
@@ -0,0 +1,13 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class AuthorStatsDTO {
+    private String author;
+    private long bookCount;
+    // prices are strings like in BookResponseDTO; they are null when none of the author's books has a price
+    private String averagePrice;
+    private String minPrice;
+    private String maxPrice;
+}
@@ -0,0 +1,10 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BookIdsRequestDTO {
+    private List<String> ids;
+}
@@ -0,0 +1,13 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportErrorDTO {
+    private long line;
+    private String error;
+}
@@ -0,0 +1,15 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BookImportResultDTO {
+    private long accepted;
+    private long rejected;
+    // only the first rejected rows are listed so the response stays small for huge files
+    private List<BookImportErrorDTO> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,13 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BookMultiGetResponseDTO {
+    // in the order the ids were requested, each id at most once
+    private List<BookResponseDTO> books = new ArrayList<>();
+    private List<String> notFound = new ArrayList<>();
+}
@@ -0,0 +1,12 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class CatalogCacheStatsDTO {
+    private boolean enabled;
+    private long hits;     // GET /books answered from the encoded bytes
+    private long misses;   // GET /books that took the normal path
+    private long rebuilds;
+    private long discarded; // rebuilds thrown away because a write committed while they ran
+}
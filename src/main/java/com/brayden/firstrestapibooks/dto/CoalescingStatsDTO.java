@@ -0,0 +1,12 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class CoalescingStatsDTO {
+    private long executions; // reads that actually ran a query
+    private long coalesced;  // reads that shared the result of a query already running
+    private long failures;
+    private long timeouts;
+    private int inFlight;
+}
@@ -0,0 +1,10 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class ShardRebalanceResultDTO {
+    private long authorsMoved;
+    private long booksMoved;
+    private long copiesRemoved; // second copies left by book updates that stopped halfway through a move
+}
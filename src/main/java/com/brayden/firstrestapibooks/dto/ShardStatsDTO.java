@@ -0,0 +1,10 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class ShardStatsDTO {
+    private int shard;
+    private long books;
+    private long misplacedAuthors; // authors with books here that the router now places on another shard
+}
@@ -0,0 +1,18 @@
+package com.brayden.firstrestapibooks.dto;
+
+import lombok.Data;
+
+@Data
+public class StaleReadStatsDTO {
+    private boolean enabled;
+    private long fresh;        // reads answered by the database
+    private long stale;        // reads answered from a stored result
+    private long unavailable;  // reads that failed with 503 because there was nothing stored to fall back on
+    private long loadFailures;
+    private long evictions;
+    private long oversized;    // author results with more than max-books books, which are never kept
+    private int entries;       // stored GET /books/author/{author} results
+    private long books;        // books held over those results, at most max-books
+    private long catalogBooks; // books in the stored GET /books result, which max-books does not limit
+    private String circuitBreaker;
+}
@@ -0,0 +1,6 @@
+package com.brayden.firstrestapibooks.event;
+
+// Published by BookServiceImpl inside every write transaction.
+// Listeners that use @TransactionalEventListener only see it once the write has committed.
+public class BookCatalogChangedEvent {
+}
@@ -1,8 +1,10 @@
 package com.brayden.firstrestapibooks.exception;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 
 @ControllerAdvice // tells Spring this class handles exceptions globally
@@ -16,4 +18,14 @@ public class GlobalExceptionHandler {
                 .build(),
                 ex.getHttpStatus());
     }
+
+    // an uploaded file over spring.servlet.multipart.max-file-size
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> handleException(MaxUploadSizeExceededException ex) {
+        return new ResponseEntity<>(ErrorResponse
+                .builder()
+                .error("The uploaded file is too large, send large CSV files as a text/csv request body")
+                .build(),
+                HttpStatus.CONTENT_TOO_LARGE);
+    }
 }
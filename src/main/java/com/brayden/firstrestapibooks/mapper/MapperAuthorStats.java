@@ -0,0 +1,24 @@
+package com.brayden.firstrestapibooks.mapper;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.model.AuthorStats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Mapped by hand because the average is calculated and ModelMapper only copies matching fields.
+public class MapperAuthorStats {
+    public static AuthorStatsDTO modelToDto(AuthorStats stats) {
+        AuthorStatsDTO dto = new AuthorStatsDTO();
+        dto.setAuthor(stats.getAuthor());
+        dto.setBookCount(stats.getBookCount());
+        if (stats.getPricedCount() > 0) {
+            dto.setAveragePrice(stats.getPriceSum()
+                    .divide(BigDecimal.valueOf(stats.getPricedCount()), 2, RoundingMode.HALF_UP)
+                    .toPlainString());
+        }
+        dto.setMinPrice(stats.getMinPrice() == null ? null : stats.getMinPrice().toPlainString());
+        dto.setMaxPrice(stats.getMaxPrice() == null ? null : stats.getMaxPrice().toPlainString());
+        return dto;
+    }
+}
@@ -3,6 +3,7 @@ package com.brayden.firstrestapibooks.mapper;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
 import com.brayden.firstrestapibooks.model.Book;
+import com.brayden.firstrestapibooks.timing.RequestTiming;
 import org.modelmapper.ModelMapper;
 
 public class MapperBook {
@@ -11,6 +12,13 @@ public class MapperBook {
         return mapper.map(dto, Book.class);
     }
     public static BookResponseDTO modelToResponseDto(Book book) {
-        return mapper.map(book, BookResponseDTO.class);
+        RequestTiming timing = RequestTiming.current(); // null unless books.server-timing.enabled is on
+        if (timing == null) {
+            return mapper.map(book, BookResponseDTO.class);
+        }
+        long start = System.nanoTime();
+        BookResponseDTO dto = mapper.map(book, BookResponseDTO.class);
+        timing.addMap(System.nanoTime() - start);
+        return dto;
     }
 }
@@ -0,0 +1,26 @@
+package com.brayden.firstrestapibooks.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Entity(name="author_stats")
+@Table(name="author_stats")
+public class AuthorStats {
+    @Id
+    private String author;
+    @Column(name="book_count")
+    private long bookCount;
+    @Column(name="priced_count") // books that have a price, used for the average
+    private long pricedCount;
+    @Column(name="price_sum")
+    private BigDecimal priceSum;
+    @Column(name="min_price")
+    private BigDecimal minPrice;
+    @Column(name="max_price")
+    private BigDecimal maxPrice;
+}
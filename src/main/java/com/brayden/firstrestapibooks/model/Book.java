@@ -1,5 +1,6 @@
 package com.brayden.firstrestapibooks.model;
 
+import com.brayden.firstrestapibooks.shard.ShardedId;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,7 +11,9 @@ import lombok.Setter;
 @Table(name="book") // you don't need to specify this if entity and table names are the same
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID) // used UUID because id is a String could use Auto or Identity to auto increment
+    // A UUID like @GeneratedValue(strategy = GenerationType.UUID) makes, because id is a String (could use Auto or Identity
+    // to auto increment), but one that also carries the shard the book was created on (see ShardIds).
+    @ShardedId
     private String id;
     @Column(name="name") // can skip this if name here matches exactly name in db so this is not needed
     private String name;
@@ -0,0 +1,74 @@
+package com.brayden.firstrestapibooks.repository;
+
+import com.brayden.firstrestapibooks.model.AuthorStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+// The writes are native SQL so every change is a single atomic statement on the author's row,
+// which keeps concurrent book writes for the same author from losing updates.
+@Repository
+public interface AuthorStatsRepository extends JpaRepository<AuthorStats, String> {
+
+    // Adds bookCount books (pricedCount of them with a price) to the author's row, creating it if needed.
+    // minPrice/maxPrice are null when none of the added books has a price; the COALESCEs keep a null
+    // on either side from wiping out the other value.
+    // The update part uses the parameters again instead of VALUES(col), which MySQL deprecated in 8.0.20.
+    // The row alias form that replaces it (VALUES (...) AS new) needs MySQL 8.0.19 and H2 can not parse it.
+    @Modifying
+    @Query(value = """
+            INSERT INTO author_stats (author, book_count, priced_count, price_sum, min_price, max_price)
+            VALUES (:author, :bookCount, :pricedCount, :priceSum, :minPrice, :maxPrice)
+            ON DUPLICATE KEY UPDATE
+                book_count = book_count + :bookCount,
+                priced_count = priced_count + :pricedCount,
+                price_sum = price_sum + :priceSum,
+                min_price = LEAST(COALESCE(min_price, :minPrice), COALESCE(:minPrice, min_price)),
+                max_price = GREATEST(COALESCE(max_price, :maxPrice), COALESCE(:maxPrice, max_price))
+            """, nativeQuery = true)
+    void addBooks(@Param("author") String author,
+                  @Param("bookCount") long bookCount,
+                  @Param("pricedCount") long pricedCount,
+                  @Param("priceSum") BigDecimal priceSum,
+                  @Param("minPrice") BigDecimal minPrice,
+                  @Param("maxPrice") BigDecimal maxPrice);
+
+    // Takes one book away from the author's row. Min and max can not be reversed like a sum,
+    // so they are recomputed from the book table, but only when the removed price was the min or the max.
+    // The subqueries use idx_book_author, so the cost is the number of books by this author, not the table size.
+    @Modifying
+    @Query(value = """
+            UPDATE author_stats
+            SET book_count = book_count - 1,
+                priced_count = priced_count - :priced,
+                price_sum = price_sum - :price,
+                min_price = CASE WHEN :priced = 1 AND min_price >= :price
+                                 THEN (SELECT MIN(b.price) FROM book b WHERE b.author = :author) ELSE min_price END,
+                max_price = CASE WHEN :priced = 1 AND max_price <= :price
+                                 THEN (SELECT MAX(b.price) FROM book b WHERE b.author = :author) ELSE max_price END
+            WHERE author = :author
+            """, nativeQuery = true)
+    void removeBook(@Param("author") String author, @Param("priced") long priced, @Param("price") BigDecimal price);
+
+    @Modifying
+    @Query(value = "DELETE FROM author_stats WHERE author = :author AND book_count <= 0", nativeQuery = true)
+    void deleteIfEmpty(@Param("author") String author);
+
+    @Modifying
+    @Query(value = "DELETE FROM author_stats", nativeQuery = true)
+    void deleteAllRows();
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO author_stats (author, book_count, priced_count, price_sum, min_price, max_price)
+            SELECT author, COUNT(*), COUNT(price), COALESCE(SUM(price), 0), MIN(price), MAX(price)
+            FROM book
+            WHERE author IS NOT NULL
+            GROUP BY author
+            """, nativeQuery = true)
+    int insertFromBooks();
+}
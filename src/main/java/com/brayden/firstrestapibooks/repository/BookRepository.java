@@ -1,6 +1,7 @@
 package com.brayden.firstrestapibooks.repository;
 
 import com.brayden.firstrestapibooks.model.Book;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,7 +10,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, String> {
+public interface BookRepository extends JpaRepository<Book, String>, BookRepositoryCustom {
 
     // Spring Data JPA can derive this query from the method name without @Query.
     // But if you need explicit SQL, use:
@@ -23,4 +24,15 @@ public interface BookRepository extends JpaRepository<Book, String> {
 
     // Best to use equivalent derived query form (without @Query):
      List<Book> findBookByAuthor(String author);
+
+    // Used by the shard rebalance to move an author's books a batch at a time.
+    List<Book> findBookByAuthor(String author, Limit limit);
+
+    @Query("SELECT DISTINCT b.author FROM book b")
+    List<String> findDistinctAuthors();
+
+    // Ids of the books here that were created on another shard (version 8 ids, see ShardIds) and moved since.
+    // idPattern is ShardIds.idPrefix(this shard) + "%".
+    @Query("SELECT b.id FROM book b WHERE SUBSTRING(b.id, 15, 1) = '8' AND b.id NOT LIKE :idPattern")
+    List<String> findIdsCreatedOnOtherShards(@Param("idPattern") String idPattern);
 }
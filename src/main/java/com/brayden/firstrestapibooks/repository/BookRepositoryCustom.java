@@ -0,0 +1,14 @@
+package com.brayden.firstrestapibooks.repository;
+
+import com.brayden.firstrestapibooks.model.Book;
+
+import java.util.List;
+
+// Extra repository methods that are not derived by Spring Data.
+// Spring Data finds the implementation by the "Impl" suffix (BookRepositoryCustomImpl).
+public interface BookRepositoryCustom {
+
+    // Inserts all books with JDBC batching in one transaction and returns how many rows were written.
+    // Books without an id get a new UUID from ShardIds, the same ids @ShardedId gives saved books.
+    int batchInsert(List<Book> books);
+}
@@ -0,0 +1,30 @@
+package com.brayden.firstrestapibooks.service;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.model.Book;
+
+import java.util.List;
+
+public interface AuthorStatsService {
+    AuthorStatsDTO findByAuthor(String author);
+
+    List<AuthorStatsDTO> findAll();
+
+    // The methods below must run inside the transaction that writes the book,
+    // so the summary table can never disagree with the book table.
+    void bookAdded(String author, String price);
+
+    void booksAdded(List<Book> books);
+
+    void bookRemoved(String author, String price);
+
+    // Moves an updated book from its old author and price to the new ones. Leaves the table alone when
+    // neither changed as far as the statistics can tell, e.g. a rename or "10" becoming "10.00".
+    void bookChanged(String oldAuthor, String oldPrice, String newAuthor, String newPrice);
+
+    // Drops the author's row, used when all of the author's books were moved to another shard.
+    void authorRemoved(String author);
+
+    // Recomputes the whole table from the book table and returns the number of authors.
+    int rebuild();
+}
@@ -1,8 +1,11 @@
 package com.brayden.firstrestapibooks.service;
 
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface BookService {
@@ -10,9 +13,13 @@ public interface BookService {
 
     List<BookResponseDTO> findByAuthor(String author);
 
+    BookMultiGetResponseDTO findByIds(List<String> ids);
+
     BookResponseDTO createBook(BookRequestDTO book);
 
     BookResponseDTO updateBook(String id, BookRequestDTO book);
 
     void deleteBook(String id);
+
+    BookImportResultDTO importBooks(InputStream csv);
 }
@@ -0,0 +1,8 @@
+package com.brayden.firstrestapibooks.service;
+
+import com.brayden.firstrestapibooks.dto.CoalescingStatsDTO;
+
+// The request coalescing counters, so readers of them do not depend on where coalescing sits in the BookService chain.
+public interface CoalescingMetrics {
+    CoalescingStatsDTO coalescingStats();
+}
@@ -0,0 +1,13 @@
+package com.brayden.firstrestapibooks.service;
+
+import com.brayden.firstrestapibooks.dto.ShardRebalanceResultDTO;
+import com.brayden.firstrestapibooks.dto.ShardStatsDTO;
+
+import java.util.List;
+
+public interface ShardService {
+    List<ShardStatsDTO> findShardStats();
+
+    // Moves every author whose books are not on the shard the router picks for them, e.g. after adding a shard.
+    ShardRebalanceResultDTO rebalance();
+}
@@ -0,0 +1,8 @@
+package com.brayden.firstrestapibooks.service;
+
+import com.brayden.firstrestapibooks.dto.StaleReadStatsDTO;
+
+// The stale-while-revalidate counters, so readers of them do not depend on where stale reads sit in the BookService chain.
+public interface StaleReadMetrics {
+    StaleReadStatsDTO staleReadStats();
+}
@@ -0,0 +1,144 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.mapper.MapperAuthorStats;
+import com.brayden.firstrestapibooks.model.AuthorStats;
+import com.brayden.firstrestapibooks.model.Book;
+import com.brayden.firstrestapibooks.repository.AuthorStatsRepository;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import com.brayden.firstrestapibooks.shard.EveryShard;
+import com.brayden.firstrestapibooks.shard.ShardKey;
+
+import lombok.AllArgsConstructor;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Service
+@AllArgsConstructor
+public class AuthorStatsServiceImpl implements AuthorStatsService {
+
+    private final AuthorStatsRepository authorStatsRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public AuthorStatsDTO findByAuthor(@ShardKey String author) { // the summary row is on the author's shard
+        // primary key lookup on the summary row, no matter how many books the author has
+        AuthorStats stats = authorStatsRepository.findById(author).orElseThrow(() ->
+                new ApiException("No books found for author: " + author, HttpStatus.NOT_FOUND));
+        return MapperAuthorStats.modelToDto(stats);
+    }
+
+    @Override
+    @EveryShard
+    @Transactional(readOnly = true)
+    public List<AuthorStatsDTO> findAll() {
+        return authorStatsRepository.findAll().stream()
+                .map(MapperAuthorStats::modelToDto)
+                .toList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY) // fails fast if called outside the book write
+    public void bookAdded(String author, String price) {
+        if (author == null) {
+            return; // books without an author are not part of any author's statistics
+        }
+        BigDecimal value = toDecimal(price);
+        authorStatsRepository.addBooks(author, 1, value == null ? 0 : 1,
+                value == null ? BigDecimal.ZERO : value, value, value);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void booksAdded(List<Book> books) {
+        // one upsert per author instead of one per book
+        Map<String, Delta> deltas = new HashMap<>();
+        for (Book book : books) {
+            if (book.getAuthor() != null) {
+                deltas.computeIfAbsent(book.getAuthor(), author -> new Delta()).add(toDecimal(book.getPrice()));
+            }
+        }
+        deltas.forEach((author, delta) -> authorStatsRepository.addBooks(author, delta.bookCount,
+                delta.pricedCount, delta.priceSum, delta.minPrice, delta.maxPrice));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bookRemoved(String author, String price) {
+        if (author == null) {
+            return;
+        }
+        BigDecimal value = toDecimal(price);
+        // the book change has to reach the database before MIN/MAX are recomputed from the book table
+        authorStatsRepository.flush();
+        authorStatsRepository.removeBook(author, value == null ? 0 : 1, value == null ? BigDecimal.ZERO : value);
+        authorStatsRepository.deleteIfEmpty(author);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bookChanged(String oldAuthor, String oldPrice, String newAuthor, String newPrice) {
+        if (Objects.equals(oldAuthor, newAuthor) && Objects.equals(toDecimal(oldPrice), toDecimal(newPrice))) {
+            return;
+        }
+        bookRemoved(oldAuthor, oldPrice);
+        bookAdded(newAuthor, newPrice);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void authorRemoved(String author) {
+        if (author != null) {
+            authorStatsRepository.deleteById(author);
+        }
+    }
+
+    @Override
+    @EveryShard // each shard rebuilds from its own book table, the authors of different shards never overlap
+    @Transactional
+    public int rebuild() {
+        authorStatsRepository.deleteAllRows();
+        return authorStatsRepository.insertFromBooks();
+    }
+
+    // Same rounding as the DECIMAL(10, 2) price column. Prices that are not numbers are left out.
+    private static BigDecimal toDecimal(String price) {
+        if (price == null || price.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(price.trim()).setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class Delta {
+        private long bookCount;
+        private long pricedCount;
+        private BigDecimal priceSum = BigDecimal.ZERO;
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+
+        void add(BigDecimal price) {
+            bookCount++;
+            if (price != null) {
+                pricedCount++;
+                priceSum = priceSum.add(price);
+                minPrice = minPrice == null || price.compareTo(minPrice) < 0 ? price : minPrice;
+                maxPrice = maxPrice == null || price.compareTo(maxPrice) > 0 ? price : maxPrice;
+            }
+        }
+    }
+}
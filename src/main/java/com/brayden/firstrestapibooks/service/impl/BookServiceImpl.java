@@ -1,28 +1,69 @@
 package com.brayden.firstrestapibooks.service.impl;
 
+import com.brayden.firstrestapibooks.csv.CsvReader;
+import com.brayden.firstrestapibooks.csv.CsvRecord;
+import com.brayden.firstrestapibooks.dto.BookImportErrorDTO;
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.event.BookCatalogChangedEvent;
 import com.brayden.firstrestapibooks.exception.ApiException;
 import com.brayden.firstrestapibooks.mapper.MapperBook;
 import com.brayden.firstrestapibooks.model.Book;
 import com.brayden.firstrestapibooks.repository.BookRepository;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
 import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.shard.BookShards;
+import com.brayden.firstrestapibooks.shard.EveryShard;
+import com.brayden.firstrestapibooks.shard.ShardIds;
+import com.brayden.firstrestapibooks.shard.ShardKey;
 
 import lombok.AllArgsConstructor;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @AllArgsConstructor
 public class BookServiceImpl implements BookService {
+    static final int IMPORT_CHUNK_SIZE = 1000;
+    static final int IMPORT_MAX_REPORTED_ERRORS = 1000;
+    static final int IMPORT_MAX_RECORD_LENGTH = 10_000;
+    private static final int MAX_TEXT_LENGTH = 255; // VARCHAR(255) in the book table
+    static final int MULTI_GET_CHUNK_SIZE = 500; // ids per IN (...) query
+    static final int MULTI_GET_MAX_IDS = 10_000;
 
     private final BookRepository bookRepository;
+    private final AuthorStatsService authorStatsService;
+    // With sharding on, @ShardKey and @EveryShard pick the shard before the @Transactional below starts.
+    // bookShards is only used directly where one request needs more than one shard.
+    private final BookShards bookShards;
+    private final ApplicationEventPublisher eventPublisher; // tells caches about writes once they commit
 
     @Override // useful because it confirms this matches a method from the interface and helps avoid typo-based method mismatches
+    // with sharding on, every shard is read at the same time and the lists are put together in shard order;
+    // a book that is on two shards for the moment (see moveBook) is listed once
+    @EveryShard(distinctBy = "id")
     @Transactional(readOnly = true) // read-only transactions are for read operations and can reduce unnecessary write-related work
     public List<BookResponseDTO> findAllBooks() {
         return bookRepository.findAll().stream()
@@ -32,17 +73,94 @@ public class BookServiceImpl implements BookService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<BookResponseDTO> findByAuthor(String author) {
+    public List<BookResponseDTO> findByAuthor(@ShardKey String author) { // all books of an author are on the same shard
         return bookRepository.findBookByAuthor(author).stream()
                 .map(MapperBook::modelToResponseDto)
                 .toList();
     }
 
+    // Not @Transactional: with sharding the shards are asked at the same time, and each
+    // findAllById below runs in its own read-only repository transaction on its shard.
+    // An id that names its shard (see ShardIds) is looked up there, ids without one on every shard.
+    // The other shards are only asked for the ids their own shard did not have, e.g. books that moved to another author's shard.
+    @Override
+    public BookMultiGetResponseDTO findByIds(List<String> ids) {
+        // LinkedHashSet drops repeated ids but keeps the order they were asked for in
+        LinkedHashSet<String> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > MULTI_GET_MAX_IDS) {
+            throw new ApiException("At most " + MULTI_GET_MAX_IDS + " ids can be requested at once", HttpStatus.BAD_REQUEST);
+        }
+
+        Map<Integer, List<String>> idsByShard = new HashMap<>();
+        List<String> idsWithoutShard = new ArrayList<>();
+        for (String id : uniqueIds) {
+            int shard = ShardIds.shardOf(id);
+            if (shard >= 0 && shard < bookShards.shardCount()) {
+                idsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(id);
+            } else {
+                idsWithoutShard.add(id);
+            }
+        }
+        Map<String, Book> found = new HashMap<>();
+        bookShards.onEveryShard(() -> {
+            List<String> shardIds = new ArrayList<>(idsByShard.getOrDefault(bookShards.currentShard(), List.of()));
+            shardIds.addAll(idsWithoutShard);
+            return findChunked(shardIds);
+        }).forEach(found::putAll);
+
+        Map<Integer, List<String>> missed = new HashMap<>();
+        idsByShard.forEach((shard, shardIds) -> shardIds.stream()
+                .filter(id -> !found.containsKey(id))
+                .forEach(id -> missed.computeIfAbsent(shard, key -> new ArrayList<>()).add(id)));
+        if (!missed.isEmpty()) {
+            bookShards.onEveryShard(() -> {
+                List<String> elsewhere = new ArrayList<>();
+                missed.forEach((shard, shardIds) -> {
+                    if (shard != bookShards.currentShard()) {
+                        elsewhere.addAll(shardIds);
+                    }
+                });
+                return findChunked(elsewhere);
+            }).forEach(found::putAll);
+        }
+
+        BookMultiGetResponseDTO response = new BookMultiGetResponseDTO();
+        for (String id : uniqueIds) {
+            Book book = found.get(id);
+            if (book != null) {
+                response.getBooks().add(MapperBook.modelToResponseDto(book));
+            } else {
+                response.getNotFound().add(id);
+            }
+        }
+        return response;
+    }
+
+    // primary key lookups in chunks, so the cost depends on the number of ids and not on the table size
+    private Map<String, Book> findChunked(Collection<String> ids) {
+        Map<String, Book> found = new HashMap<>();
+        List<String> chunk = new ArrayList<>(MULTI_GET_CHUNK_SIZE);
+        for (String id : ids) {
+            chunk.add(id);
+            if (chunk.size() == MULTI_GET_CHUNK_SIZE) {
+                bookRepository.findAllById(chunk).forEach(book -> found.put(book.getId(), book));
+                chunk = new ArrayList<>(MULTI_GET_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            bookRepository.findAllById(chunk).forEach(book -> found.put(book.getId(), book));
+        }
+        return found;
+    }
+
     @Override
     @Transactional // write operations should be transactional so changes are rolled back if an error occurs
-    public BookResponseDTO createBook(BookRequestDTO book) {
+    public BookResponseDTO createBook(@ShardKey BookRequestDTO book) {
+        bookShards.checkWritable();
         Book modelBook = MapperBook.dtoRequestToModel(book);
         Book repositoryBook = bookRepository.save(modelBook);
+        authorStatsService.bookAdded(repositoryBook.getAuthor(), repositoryBook.getPrice());
+        eventPublisher.publishEvent(new BookCatalogChangedEvent());
 
         // this would let the book object with the wrong name value save to the db if not for @Transactional
         if(book.getName().equals("name")) {
@@ -55,12 +173,21 @@ public class BookServiceImpl implements BookService {
 
     @Override
     @Transactional // transactional writes will roll back if an error happens
-    public BookResponseDTO updateBook(String id, BookRequestDTO book) {
+    public BookResponseDTO updateBook(@ShardKey(ShardKey.Type.BOOK_ID) String id, BookRequestDTO book) {
+        bookShards.checkWritable();
         // the line below gets the info for the book we want to replace from the db using id
         // and throws an error if that book id does not exist
         Book bookInRepository = bookRepository.findById(id).orElseThrow(() ->
                 new ApiException("No Book found by id: " + id, HttpStatus.NOT_FOUND));
 
+        if (bookShards.shardFor(book.getAuthor()) != bookShards.currentShard()) {
+            return moveBook(bookInRepository, book);
+        }
+
+        // keep the old values so the author statistics can be moved from the old values to the new ones
+        String oldAuthor = bookInRepository.getAuthor();
+        String oldPrice = bookInRepository.getPrice();
+
         // below fills in info as if it is a new book
         //no need to fill in id since that id is connected to the book we want to replace
         bookInRepository.setName(book.getName());
@@ -69,16 +196,181 @@ public class BookServiceImpl implements BookService {
 
         // now we need to save this new book on the id of the old book replacing/updating it
         Book saveBook = bookRepository.save(bookInRepository);
+        // a rename leaves the statistics as they are, the statistics service skips the summary row updates then
+        authorStatsService.bookChanged(oldAuthor, oldPrice, saveBook.getAuthor(), saveBook.getPrice());
+        eventPublisher.publishEvent(new BookCatalogChangedEvent());
         // use the MapperBook to model the saveBook response into a bookResponseDTO
         return MapperBook.modelToResponseDto(saveBook);
     }
 
+    // The new author's books are on another shard, and one transaction can not span two shards.
+    // The book is first committed there (with the same id) and then deleted here, in the caller's transaction.
+    // If that transaction does not commit, the copy is removed again so the book is not left on both shards.
+    // Until this transaction commits the book is on both shards; GET /books and findByIds list it once.
+    // If the application dies in between, the copy stays: the next POST /shards/rebalance removes it.
+    private BookResponseDTO moveBook(Book bookInRepository, BookRequestDTO book) {
+        Book movedBook = MapperBook.dtoRequestToModel(book);
+        movedBook.setId(bookInRepository.getId());
+        int toShard = bookShards.shardFor(movedBook.getAuthor());
+        bookShards.inShardTransaction(toShard, () -> {
+            bookRepository.batchInsert(List.of(movedBook));
+            authorStatsService.bookAdded(movedBook.getAuthor(), movedBook.getPrice());
+            return null;
+        });
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    bookShards.inShardTransaction(toShard, () -> {
+                        bookRepository.deleteById(movedBook.getId());
+                        authorStatsService.bookRemoved(movedBook.getAuthor(), movedBook.getPrice());
+                        return null;
+                    });
+                }
+            }
+        });
+        bookRepository.delete(bookInRepository);
+        authorStatsService.bookRemoved(bookInRepository.getAuthor(), bookInRepository.getPrice());
+        eventPublisher.publishEvent(new BookCatalogChangedEvent());
+        return MapperBook.modelToResponseDto(movedBook);
+    }
+
     @Override
     @Transactional
-    public void deleteBook(String id) {
-        if(!bookRepository.existsById(id)) {
-            throw new ApiException("No Book found by id: " + id, HttpStatus.NOT_FOUND);
-        }
+    public void deleteBook(@ShardKey(ShardKey.Type.BOOK_ID) String id) {
+        bookShards.checkWritable();
+        // the book is loaded (not just checked with existsById) because its author and price are needed for the statistics
+        Book bookInRepository = bookRepository.findById(id).orElseThrow(() ->
+                new ApiException("No Book found by id: " + id, HttpStatus.NOT_FOUND));
         bookRepository.deleteById(id);
+        authorStatsService.bookRemoved(bookInRepository.getAuthor(), bookInRepository.getPrice());
+        eventPublisher.publishEvent(new BookCatalogChangedEvent());
+    }
+
+    // Not @Transactional on purpose: every chunk (rows and author statistics) is committed on its own,
+    // so a file with millions of rows never holds one huge transaction open.
+    // Rows that were accepted before a read error stay saved.
+    @Override
+    public BookImportResultDTO importBooks(InputStream csv) {
+        bookShards.checkWritable();
+        BookImportResultDTO result = new BookImportResultDTO();
+        CsvReader reader = new CsvReader(
+                new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8)), IMPORT_MAX_RECORD_LENGTH);
+        try {
+            CsvRecord header = reader.next();
+            if (header == null || header.getError() != null) {
+                throw new ApiException("CSV file must start with a header row", HttpStatus.BAD_REQUEST);
+            }
+            List<String> columns = header.getFields().stream()
+                    .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            int nameColumn = columns.indexOf("name");
+            int authorColumn = columns.indexOf("author");
+            int priceColumn = columns.indexOf("price");
+            if (nameColumn < 0) {
+                throw new ApiException("CSV header must contain a 'name' column", HttpStatus.BAD_REQUEST);
+            }
+
+            List<Book> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            CsvRecord row;
+            while ((row = reader.next()) != null) {
+                String error = row.getError() != null ? row.getError() : validateRow(row.getFields(), columns.size(),
+                        nameColumn, authorColumn, priceColumn);
+                if (error != null) {
+                    reject(result, row.getLine(), error);
+                    continue;
+                }
+                chunk.add(toBook(row.getFields(), nameColumn, authorColumn, priceColumn));
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    result.setAccepted(result.getAccepted() + insertChunk(chunk));
+                    chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                result.setAccepted(result.getAccepted() + insertChunk(chunk));
+            }
+        } catch (IOException e) {
+            throw new ApiException("Could not read CSV after " + result.getAccepted() + " imported rows: "
+                    + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return result;
+    }
+
+    // Each row goes to its author's shard, and the part of the chunk for each shard is committed on its own.
+    private int insertChunk(List<Book> chunk) {
+        Map<Integer, List<Book>> booksByShard = new TreeMap<>();
+        for (Book book : chunk) {
+            booksByShard.computeIfAbsent(bookShards.shardFor(book.getAuthor()), shard -> new ArrayList<>()).add(book);
+        }
+        int inserted = 0;
+        for (Map.Entry<Integer, List<Book>> entry : booksByShard.entrySet()) {
+            List<Book> books = entry.getValue();
+            inserted += bookShards.inShardTransaction(entry.getKey(), () -> {
+                int count = bookRepository.batchInsert(books);
+                authorStatsService.booksAdded(books);
+                eventPublisher.publishEvent(new BookCatalogChangedEvent());
+                return count;
+            });
+        }
+        return inserted;
+    }
+
+    private static String validateRow(List<String> fields, int columnCount, int nameColumn, int authorColumn,
+                                      int priceColumn) {
+        if (fields.size() != columnCount) {
+            return "expected " + columnCount + " columns but found " + fields.size();
+        }
+        String name = fields.get(nameColumn).trim();
+        if (name.isEmpty()) {
+            return "name is required";
+        }
+        if (name.length() > MAX_TEXT_LENGTH) {
+            return "name is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (authorColumn >= 0 && fields.get(authorColumn).trim().length() > MAX_TEXT_LENGTH) {
+            return "author is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        if (priceColumn >= 0 && !fields.get(priceColumn).isBlank()) {
+            return validatePrice(fields.get(priceColumn).trim());
+        }
+        return null;
+    }
+
+    // price is stored in a DECIMAL(10, 2) column
+    private static String validatePrice(String price) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(price);
+        } catch (NumberFormatException e) {
+            return "price '" + price + "' is not a number";
+        }
+        if (value.signum() < 0) {
+            return "price can not be negative";
+        }
+        if (value.stripTrailingZeros().scale() > 2 || value.precision() - value.scale() > 8) {
+            return "price '" + price + "' does not fit DECIMAL(10, 2)";
+        }
+        return null;
+    }
+
+    private static Book toBook(List<String> fields, int nameColumn, int authorColumn, int priceColumn) {
+        Book book = new Book();
+        book.setName(fields.get(nameColumn).trim());
+        book.setAuthor(authorColumn >= 0 ? blankToNull(fields.get(authorColumn)) : null);
+        book.setPrice(priceColumn >= 0 ? blankToNull(fields.get(priceColumn)) : null);
+        return book;
+    }
+
+    private static String blankToNull(String value) {
+        return value.isBlank() ? null : value.trim();
+    }
+
+    private static void reject(BookImportResultDTO result, long line, String error) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < IMPORT_MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new BookImportErrorDTO(line, error));
+        } else {
+            result.setErrorsTruncated(true);
+        }
     }
 }
@@ -0,0 +1,108 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.concurrent.SingleFlight;
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.dto.CoalescingStatsDTO;
+import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.service.CoalescingMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sits in front of BookServiceImpl (and behind StaleReadBookService, the BookService the controller gets) and lets
+ * concurrent identical reads share one database query and one mapped result.
+ * It is outside the @Transactional methods on purpose: callers that wait do not hold a transaction
+ * or a pooled connection.
+ * The shared lists are immutable; the DTOs in them must be treated as read-only.
+ */
+@Service
+public class CoalescingBookService implements BookService, CoalescingMetrics {
+    private static final String ALL_BOOKS_KEY = "findAllBooks";
+    private static final String AUTHOR_KEY_PREFIX = "findByAuthor:";
+
+    private final BookServiceImpl bookService;
+    private final SingleFlight<String, List<BookResponseDTO>> singleFlight = new SingleFlight<>();
+    private final boolean enabled;
+    private final Duration timeout;
+
+    public CoalescingBookService(BookServiceImpl bookService,
+                                 @Value("${books.coalescing.enabled:true}") boolean enabled,
+                                 @Value("${books.coalescing.timeout-ms:30000}") long timeoutMs) {
+        this.bookService = bookService;
+        this.enabled = enabled;
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    @Override
+    public List<BookResponseDTO> findAllBooks() {
+        if (!enabled) {
+            return bookService.findAllBooks();
+        }
+        return singleFlight.execute(ALL_BOOKS_KEY, bookService::findAllBooks, timeout);
+    }
+
+    @Override
+    public List<BookResponseDTO> findByAuthor(String author) {
+        if (!enabled) {
+            return bookService.findByAuthor(author);
+        }
+        return singleFlight.execute(AUTHOR_KEY_PREFIX + author, () -> bookService.findByAuthor(author), timeout);
+    }
+
+    // id lists rarely repeat exactly, so they are not coalesced
+    @Override
+    public BookMultiGetResponseDTO findByIds(List<String> ids) {
+        return bookService.findByIds(ids);
+    }
+
+    // After a write has committed, reads that arrive later must not join a query that started before it,
+    // otherwise a client could miss its own write.
+
+    @Override
+    public BookResponseDTO createBook(BookRequestDTO book) {
+        BookResponseDTO created = bookService.createBook(book);
+        singleFlight.forgetAll();
+        return created;
+    }
+
+    @Override
+    public BookResponseDTO updateBook(String id, BookRequestDTO book) {
+        BookResponseDTO updated = bookService.updateBook(id, book);
+        singleFlight.forgetAll();
+        return updated;
+    }
+
+    @Override
+    public void deleteBook(String id) {
+        bookService.deleteBook(id);
+        singleFlight.forgetAll();
+    }
+
+    @Override
+    public BookImportResultDTO importBooks(InputStream csv) {
+        try {
+            return bookService.importBooks(csv);
+        } finally {
+            singleFlight.forgetAll(); // chunks may have been committed even if the import failed later
+        }
+    }
+
+    @Override
+    public CoalescingStatsDTO coalescingStats() {
+        CoalescingStatsDTO stats = new CoalescingStatsDTO();
+        stats.setExecutions(singleFlight.getExecutions());
+        stats.setCoalesced(singleFlight.getCoalesced());
+        stats.setFailures(singleFlight.getFailures());
+        stats.setTimeouts(singleFlight.getTimeouts());
+        stats.setInFlight(singleFlight.getInFlight());
+        return stats;
+    }
+}
@@ -0,0 +1,156 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.dto.ShardRebalanceResultDTO;
+import com.brayden.firstrestapibooks.dto.ShardStatsDTO;
+import com.brayden.firstrestapibooks.event.BookCatalogChangedEvent;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.model.Book;
+import com.brayden.firstrestapibooks.repository.BookRepository;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import com.brayden.firstrestapibooks.service.ShardService;
+import com.brayden.firstrestapibooks.shard.BookShards;
+import com.brayden.firstrestapibooks.shard.ShardIds;
+
+import lombok.AllArgsConstructor;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Resharding tool. After a shard is added to books.sharding.shards, the router places some authors on it
+// while their books are still on the old shard; rebalance() moves them.
+// It only runs with books.sharding.read-only on: a book updated while its author is being moved could lose the
+// update, and one deleted in the middle of a batch would come back from its copy on the new shard.
+// Reads keep working, only GET /books/author/{author} misses the books of an author that is halfway through the move.
+@Service
+@AllArgsConstructor
+public class ShardServiceImpl implements ShardService {
+    static final int REBALANCE_BATCH_SIZE = 1000; // books copied per transaction
+
+    private final BookRepository bookRepository;
+    private final AuthorStatsService authorStatsService;
+    private final BookShards bookShards;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public List<ShardStatsDTO> findShardStats() {
+        List<ShardStatsDTO> stats = new ArrayList<>();
+        for (int shard = 0; shard < bookShards.shardCount(); shard++) {
+            int current = shard;
+            ShardStatsDTO shardStats = bookShards.onShard(shard, () -> {
+                ShardStatsDTO dto = new ShardStatsDTO();
+                dto.setShard(current);
+                dto.setBooks(bookRepository.count());
+                dto.setMisplacedAuthors(misplacedAuthors(current).size());
+                return dto;
+            });
+            stats.add(shardStats);
+        }
+        return stats;
+    }
+
+    // Not one transaction on purpose: a shard can not take part in another shard's transaction,
+    // and an author with many books is moved in batches so no transaction grows with the author's size.
+    // Running it again after a failure continues where it stopped.
+    @Override
+    public ShardRebalanceResultDTO rebalance() {
+        if (!bookShards.isReadOnly()) {
+            throw new ApiException("Restart every instance with books.sharding.read-only=true before rebalancing,"
+                    + " writes during the move could be lost", HttpStatus.CONFLICT);
+        }
+        ShardRebalanceResultDTO result = new ShardRebalanceResultDTO();
+        result.setCopiesRemoved(removeLeftoverCopies());
+        for (int shard = 0; shard < bookShards.shardCount(); shard++) {
+            int fromShard = shard;
+            List<String> authors = bookShards.onShard(fromShard, () -> misplacedAuthors(fromShard));
+            for (String author : authors) {
+                result.setBooksMoved(result.getBooksMoved() + moveAuthor(author, fromShard));
+                result.setAuthorsMoved(result.getAuthorsMoved() + 1);
+            }
+        }
+        return result;
+    }
+
+    // A book update that moved the book to another shard and stopped between its two commits
+    // (see BookServiceImpl.moveBook) left it on both. The copy keeps its id, so it is among the ids created
+    // on another shard. The copy updates and deletes find (BookShards.shardOfBook) stays, the other goes.
+    private long removeLeftoverCopies() {
+        long removed = 0;
+        for (int shard = 0; shard < bookShards.shardCount(); shard++) {
+            int current = shard;
+            List<String> movedIds = bookShards.onShard(current, () ->
+                    bookRepository.findIdsCreatedOnOtherShards(ShardIds.idPrefix(current) + "%"));
+            for (int from = 0; from < movedIds.size(); from += REBALANCE_BATCH_SIZE) {
+                List<String> batch = movedIds.subList(from, Math.min(from + REBALANCE_BATCH_SIZE, movedIds.size()));
+                Set<String> leftovers = new LinkedHashSet<>();
+                for (int other = 0; other < bookShards.shardCount(); other++) {
+                    if (other != current) {
+                        bookShards.onShard(other, () -> bookRepository.findAllById(batch)).stream()
+                                .map(Book::getId)
+                                .filter(id -> bookShards.shardOfBook(id, bookRepository::existsById) != current)
+                                .forEach(leftovers::add);
+                    }
+                }
+                if (!leftovers.isEmpty()) {
+                    removed += bookShards.inShardTransaction(current, () -> {
+                        List<Book> copies = bookRepository.findAllById(leftovers);
+                        bookRepository.deleteAllByIdInBatch(leftovers);
+                        copies.forEach(copy -> authorStatsService.bookRemoved(copy.getAuthor(), copy.getPrice()));
+                        eventPublisher.publishEvent(new BookCatalogChangedEvent());
+                        return copies.size();
+                    });
+                }
+            }
+        }
+        return removed;
+    }
+
+    private List<String> misplacedAuthors(int shard) {
+        return bookRepository.findDistinctAuthors().stream()
+                .filter(author -> bookShards.shardFor(author) != shard)
+                .toList();
+    }
+
+    private long moveAuthor(String author, int fromShard) {
+        int toShard = bookShards.shardFor(author);
+        long moved = 0;
+        List<Book> batch;
+        while (!(batch = bookShards.onShard(fromShard, () ->
+                bookRepository.findBookByAuthor(author, Limit.of(REBALANCE_BATCH_SIZE)))).isEmpty()) {
+            List<Book> books = batch;
+            List<String> ids = books.stream().map(Book::getId).toList();
+            // copy first, so a failure between the two steps leaves the book on both shards and never on none
+            bookShards.inShardTransaction(toShard, () -> {
+                // a previous run may have copied some of them already before it stopped
+                Set<String> copied = new HashSet<>();
+                bookRepository.findAllById(ids).forEach(book -> copied.add(book.getId()));
+                List<Book> missing = books.stream().filter(book -> !copied.contains(book.getId())).toList();
+                if (!missing.isEmpty()) {
+                    bookRepository.batchInsert(missing);
+                    authorStatsService.booksAdded(missing);
+                }
+                eventPublisher.publishEvent(new BookCatalogChangedEvent());
+                return null;
+            });
+            bookShards.inShardTransaction(fromShard, () -> {
+                bookRepository.deleteAllByIdInBatch(ids);
+                eventPublisher.publishEvent(new BookCatalogChangedEvent());
+                return null;
+            });
+            moved += books.size();
+        }
+        // the old shard's summary row still counts the books that left, it goes once they are all gone
+        bookShards.inShardTransaction(fromShard, () -> {
+            authorStatsService.authorRemoved(author);
+            return null;
+        });
+        return moved;
+    }
+}
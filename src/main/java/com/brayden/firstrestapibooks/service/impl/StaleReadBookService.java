@@ -0,0 +1,173 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.cache.StaleResponseAdvice;
+import com.brayden.firstrestapibooks.cache.StaleWhileRevalidateCache;
+import com.brayden.firstrestapibooks.concurrent.CircuitBreaker;
+import com.brayden.firstrestapibooks.concurrent.QueryDeadline;
+import com.brayden.firstrestapibooks.config.StaleReadProperties;
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.dto.StaleReadStatsDTO;
+import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.service.StaleReadMetrics;
+import com.brayden.firstrestapibooks.timing.RequestTiming;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The @Primary BookService: sits in front of CoalescingBookService and, when books.stale-reads.enabled is on,
+ * answers findAllBooks and findByAuthor from the last good result if the database is slow or down.
+ * Such responses get an Age and a Stale-Reason header (see StaleResponseAdvice).
+ * The catalog (findAllBooks) has an entry of its own, whatever its size; max-books only bounds the author results.
+ * Queries for a read give up after refresh-timeout-ms (QueryDeadline), also when they run on the caller's thread.
+ * Outside a web request a stale result could not be marked, so reads there always go to the database.
+ * Writes and findByIds go straight through.
+ */
+@Service
+@Primary
+@EnableConfigurationProperties(StaleReadProperties.class)
+public class StaleReadBookService implements BookService, StaleReadMetrics {
+    private static final String ALL_BOOKS_KEY = "findAllBooks";
+    private static final String AUTHOR_KEY_PREFIX = "findByAuthor:";
+
+    private final CoalescingBookService bookService;
+    private final boolean enabled;
+    private final long refreshTimeoutNanos;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final StaleWhileRevalidateCache<String, List<BookResponseDTO>> catalog; // only ALL_BOOKS_KEY
+    private final StaleWhileRevalidateCache<String, List<BookResponseDTO>> cache;   // the author results
+
+    public StaleReadBookService(CoalescingBookService bookService, StaleReadProperties properties) {
+        this.bookService = bookService;
+        this.enabled = properties.isEnabled();
+        this.refreshTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getRefreshTimeoutMs());
+        AtomicInteger threads = new AtomicInteger();
+        // a fixed number of threads and no queue: when the database hangs, the stuck loads can not pile up,
+        // and when all threads are busy reads with a stored result are answered from it right away
+        this.refreshExecutor = new ThreadPoolExecutor(properties.getRefreshThreads(), properties.getRefreshThreads(),
+                0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "stale-read-refresh-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // one breaker for both caches, it is the same database
+        this.circuitBreaker = new CircuitBreaker(properties.getFailureThreshold(), Duration.ofMillis(properties.getOpenMs()));
+        this.catalog = cache(Long.MAX_VALUE, properties);
+        this.cache = cache(properties.getMaxBooks(), properties);
+    }
+
+    private StaleWhileRevalidateCache<String, List<BookResponseDTO>> cache(long maxBooks, StaleReadProperties properties) {
+        return new StaleWhileRevalidateCache<>(refreshExecutor, circuitBreaker, List::size, maxBooks,
+                Duration.ofMillis(properties.getSoftTimeoutMs()), Duration.ofMillis(properties.getRefreshTimeoutMs()),
+                Duration.ofMillis(properties.getMaxStaleMs()));
+    }
+
+    @Override
+    public List<BookResponseDTO> findAllBooks() {
+        if (!enabled) {
+            return bookService.findAllBooks();
+        }
+        return read(catalog, ALL_BOOKS_KEY, bookService::findAllBooks);
+    }
+
+    @Override
+    public List<BookResponseDTO> findByAuthor(String author) {
+        if (!enabled) {
+            return bookService.findByAuthor(author);
+        }
+        return read(cache, AUTHOR_KEY_PREFIX + author, () -> bookService.findByAuthor(author));
+    }
+
+    private List<BookResponseDTO> read(StaleWhileRevalidateCache<String, List<BookResponseDTO>> cache, String key,
+                                       Supplier<List<BookResponseDTO>> loader) {
+        if (!StaleResponseAdvice.canMarkStale()) {
+            return loader.get(); // e.g. the catalog response cache rebuild, which must never store an old catalog
+        }
+        RequestTiming timing = RequestTiming.current(); // the load may run on a refresh thread
+        StaleWhileRevalidateCache.Result<List<BookResponseDTO>> result = cache.get(key, () ->
+                QueryDeadline.callWith(System.nanoTime() + refreshTimeoutNanos, () -> RequestTiming.callWith(timing, loader)));
+        if (result.isStale()) {
+            StaleResponseAdvice.markStale(result.getStaleReason(), result.getAgeMillis());
+        }
+        return result.getValue();
+    }
+
+    @Override
+    public BookMultiGetResponseDTO findByIds(List<String> ids) {
+        return bookService.findByIds(ids);
+    }
+
+    // Like CoalescingBookService: reads after a write must not join a load that started before it.
+
+    @Override
+    public BookResponseDTO createBook(BookRequestDTO book) {
+        BookResponseDTO created = bookService.createBook(book);
+        forgetLoads();
+        return created;
+    }
+
+    @Override
+    public BookResponseDTO updateBook(String id, BookRequestDTO book) {
+        BookResponseDTO updated = bookService.updateBook(id, book);
+        forgetLoads();
+        return updated;
+    }
+
+    @Override
+    public void deleteBook(String id) {
+        bookService.deleteBook(id);
+        forgetLoads();
+    }
+
+    @Override
+    public BookImportResultDTO importBooks(InputStream csv) {
+        try {
+            return bookService.importBooks(csv);
+        } finally {
+            forgetLoads();
+        }
+    }
+
+    private void forgetLoads() {
+        catalog.forgetLoads();
+        cache.forgetLoads();
+    }
+
+    @Override
+    public StaleReadStatsDTO staleReadStats() {
+        StaleReadStatsDTO stats = new StaleReadStatsDTO();
+        stats.setEnabled(enabled);
+        stats.setFresh(catalog.getFresh() + cache.getFresh());
+        stats.setStale(catalog.getStale() + cache.getStale());
+        stats.setUnavailable(catalog.getUnavailable() + cache.getUnavailable());
+        stats.setLoadFailures(catalog.getLoadFailures() + cache.getLoadFailures());
+        stats.setEvictions(cache.getEvictions());
+        stats.setOversized(cache.getOversized());
+        stats.setEntries(cache.getEntries());
+        stats.setBooks(cache.getWeight() - cache.getEntries()); // every entry weighs its books + 1
+        stats.setCatalogBooks(Math.max(0, catalog.getWeight() - catalog.getEntries()));
+        stats.setCircuitBreaker(circuitBreaker.getState().name());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,178 @@
+package com.brayden.firstrestapibooks.shard;
+
+import com.brayden.firstrestapibooks.concurrent.QueryDeadline;
+import com.brayden.firstrestapibooks.config.ShardingProperties;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.timing.RequestTiming;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs work on one shard or on every shard. Service methods do not call this directly: ShardSelectionAspect
+ * uses it for @ShardKey and @EveryShard, and the transactions stay the methods' own @Transactional.
+ * Only work that needs more than one shard at a time, like moving a book to its new author's shard,
+ * the CSV import or the rebalance, uses inShardTransaction itself.
+ * With a single shard (the default) the aspect is not registered and everything runs on the one database.
+ */
+@Component
+public class BookShards {
+    private final ShardRouter router;
+    private final TransactionOperations newTransaction;
+    private final boolean readOnly;
+    // runs onEveryShard in parallel; null with a single shard, everything then runs on the caller's thread
+    private final ExecutorService executor;
+
+    @Autowired
+    public BookShards(ShardRouter router, PlatformTransactionManager transactionManager, ShardingProperties properties) {
+        this(router, requiresNew(transactionManager), properties.isReadOnly());
+    }
+
+    private BookShards(ShardRouter router, TransactionOperations newTransaction, boolean readOnly) {
+        this.router = router;
+        this.newTransaction = newTransaction;
+        this.readOnly = readOnly;
+        this.executor = router.shardCount() == 1 ? null : Executors.newFixedThreadPool(router.shardCount() * 4, daemonThreads());
+    }
+
+    // For unit tests: runs the work directly, without a transaction manager.
+    public static BookShards withoutTransactions(ShardRouter router) {
+        return new BookShards(router, TransactionOperations.withoutTransaction(), false);
+    }
+
+    // books.sharding.read-only: no book may be written, so the rebalance can move books without losing writes.
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Called by every book write before it changes anything.
+    public void checkWritable() {
+        if (readOnly) {
+            throw new ApiException("Books can not be changed while the shards are rebalanced (books.sharding.read-only)",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    public int shardCount() {
+        return router.shardCount();
+    }
+
+    public int shardFor(String author) {
+        return router.shardFor(author);
+    }
+
+    // The shard the current thread works on. Like ShardRoutingDataSource, no shard means shard 0.
+    public int currentShard() {
+        Integer shard = ShardContext.current();
+        return shard == null ? 0 : shard;
+    }
+
+    // Runs the work with its connections going to the shard. A transaction is up to the work itself.
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    // Runs the work in a new transaction on the shard. It is always a new one, because a transaction that
+    // is open on another shard can not be joined; that one is suspended until the work has committed.
+    public <T> T inShardTransaction(int shard, Supplier<T> work) {
+        return onShard(shard, () -> newTransaction.execute(status -> work.get()));
+    }
+
+    // Runs the work once per shard, in parallel, and returns the results in shard order.
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (executor == null) {
+            return List.of(work.get());
+        }
+        RequestTiming timing = RequestTiming.current(); // the shard threads add to the caller's request timing
+        Long deadline = QueryDeadline.current(); // and their queries end when the caller's would
+        List<Future<T>> futures = new ArrayList<>(shardCount());
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> RequestTiming.callWith(timing,
+                    () -> QueryDeadline.callWith(deadline, () -> onShard(target, work)))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new ApiException("Interrupted while reading from the shards", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            // rethrow what the shard threw, e.g. an ApiException, as if it had run on this thread
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    // Finds the shard a book is on, or -1 when no shard has it. The shard in the id (see ShardIds) is asked first,
+    // the others only for ids from before sharding and for books that moved to another author's shard since.
+    // These are primary key lookups on the caller's thread, one shard after the other, so updates and deletes
+    // never wait for the onEveryShard threads.
+    public int shardOfBook(String id, Predicate<String> exists) {
+        int hint = ShardIds.shardOf(id);
+        if (hint >= 0 && hint < shardCount() && onShard(hint, () -> exists.test(id))) {
+            return hint;
+        }
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            if (shard != hint && onShard(target, () -> exists.test(id))) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TransactionOperations requiresNew(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "book-shard-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.brayden.firstrestapibooks.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the service method once per shard, in parallel and each in its own transaction, and combines the results:
+ * lists are put together in shard order, counts are added up. With a single shard the method runs once as usual.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EveryShard {
+    // The property that identifies a list element, e.g. "id". An element that several shards return
+    // (a book that is being moved between shards) is then kept once, from the first shard that has it.
+    String distinctBy() default "";
+}
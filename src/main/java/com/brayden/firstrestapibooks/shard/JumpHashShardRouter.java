@@ -0,0 +1,54 @@
+package com.brayden.firstrestapibooks.shard;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Places authors with jump consistent hash (Lamping and Veach) over a 64-bit FNV-1a hash of the author.
+ * Going from n to n + 1 shards moves only about 1/(n + 1) of the authors, all of them onto the new shard,
+ * so new shards have to be added at the end of the list and existing ones never reordered.
+ */
+public class JumpHashShardRouter implements ShardRouter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int shards;
+
+    public JumpHashShardRouter(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = shards;
+    }
+
+    @Override
+    public int shardCount() {
+        return shards;
+    }
+
+    @Override
+    public int shardFor(String author) {
+        // books without an author are placed like an empty author name
+        return jumpConsistentHash(fnv1a(author == null ? "" : author), shards);
+    }
+
+    static int jumpConsistentHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    // String.hashCode() is only 32 bits, FNV-1a over the UTF-8 bytes spreads similar names better
+    static long fnv1a(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,25 @@
+package com.brayden.firstrestapibooks.shard;
+
+/**
+ * The shard the current thread works on. BookShards sets it (for ShardSelectionAspect, before the
+ * transaction starts) and ShardRoutingDataSource reads it when a connection is opened.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    // null when no shard was chosen, connections then go to shard 0
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+}
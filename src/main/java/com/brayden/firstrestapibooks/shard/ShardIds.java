@@ -0,0 +1,49 @@
+package com.brayden.firstrestapibooks.shard;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Book ids that remember the shard they were created on: a version 8 UUID (the custom layout of RFC 9562)
+ * with the shard number in its first 16 bits and random bits everywhere else.
+ * The shard is only a hint, because a book keeps its id when a new author moves it to another shard.
+ * Ids created outside a shard (no sharding, or from before it) are plain version 4 UUIDs without a hint.
+ */
+public final class ShardIds {
+    private static final SecureRandom RANDOM = new SecureRandom(); // what UUID.randomUUID() uses as well
+    private static final int MAX_SHARD = 0xFFFF;
+
+    private ShardIds() {
+    }
+
+    // A new id for a book written on the current thread's shard.
+    public static String newId() {
+        Integer shard = ShardContext.current();
+        return shard == null || shard > MAX_SHARD ? UUID.randomUUID().toString() : newId(shard);
+    }
+
+    static String newId(int shard) {
+        long high = (RANDOM.nextLong() & 0x0000_FFFF_FFFF_0FFFL) | ((long) shard << 48) | 0x8000L; // shard, version 8
+        long low = (RANDOM.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L; // IETF variant
+        return new UUID(high, low).toString();
+    }
+
+    // How the ids created on the shard start, e.g. "0002" for shard 2 (the first 16 bits in hex).
+    public static String idPrefix(int shard) {
+        return String.format("%04x", shard);
+    }
+
+    // The shard the id was created on, or -1 when the id carries no hint.
+    public static int shardOf(String id) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        if (uuid.variant() != 2 || uuid.version() != 8) {
+            return -1;
+        }
+        return (int) (uuid.getMostSignificantBits() >>> 48);
+    }
+}
@@ -0,0 +1,20 @@
+package com.brayden.firstrestapibooks.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the argument that decides which shard a service method runs on. ShardSelectionAspect reads it
+ * before the method's @Transactional opens a connection, so the whole transaction is on that shard.
+ * AUTHOR: the argument is the author, or an object with an author property (like BookRequestDTO).
+ * BOOK_ID: the argument is a book id, the shard is the one the book is on.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+    Type value() default Type.AUTHOR;
+
+    enum Type { AUTHOR, BOOK_ID }
+}
@@ -0,0 +1,13 @@
+package com.brayden.firstrestapibooks.shard;
+
+/**
+ * Decides which shard a book lives on. All books of one author are on the same shard,
+ * together with that author's row in author_stats, so author reads and writes touch a single shard.
+ * Replace the bean in ShardingConfig to plug in a different placement.
+ */
+public interface ShardRouter {
+    int shardCount();
+
+    // Must return the same shard for the same author on every run, between 0 and shardCount() - 1.
+    int shardFor(String author);
+}
@@ -0,0 +1,156 @@
+package com.brayden.firstrestapibooks.shard;
+
+import com.brayden.firstrestapibooks.repository.BookRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the shard for @ShardKey and @EveryShard service methods. It has to run before the transaction
+ * interceptor: a transaction keeps the connection it starts with, so the shard must be set by then.
+ * Only registered with books.sharding.enabled; without it the annotations change nothing.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // the transaction interceptor has the lowest precedence, so it runs inside this
+@ConditionalOnProperty(name = "books.sharding.enabled", havingValue = "true")
+public class ShardSelectionAspect {
+    private final BookShards bookShards;
+    private final BookRepository bookRepository;
+    private final Map<Method, ShardKeyParameter> keyParameters = new ConcurrentHashMap<>();
+    private final Map<Getter, Method> getters = new ConcurrentHashMap<>(); // for @EveryShard(distinctBy)
+
+    public ShardSelectionAspect(BookShards bookShards, BookRepository bookRepository) {
+        this.bookShards = bookShards;
+        this.bookRepository = bookRepository;
+    }
+
+    @Around("execution(* com.brayden.firstrestapibooks..*(.., @com.brayden.firstrestapibooks.shard.ShardKey (*), ..))")
+    public Object onKeyShard(ProceedingJoinPoint joinPoint) throws Throwable {
+        ShardKeyParameter key = keyParameters.computeIfAbsent(method(joinPoint), ShardSelectionAspect::findKeyParameter);
+        int shard = shardOf(key.type(), joinPoint.getArgs()[key.index()]);
+        if (TransactionSynchronizationManager.isActualTransactionActive() && bookShards.currentShard() != shard) {
+            // joining would silently write to the wrong shard
+            throw new IllegalStateException("A transaction is open on shard " + bookShards.currentShard()
+                    + ", work on shard " + shard + " needs its own transaction (BookShards.inShardTransaction)");
+        }
+        return bookShards.onShard(shard, () -> proceed(joinPoint));
+    }
+
+    @Around("@annotation(com.brayden.firstrestapibooks.shard.EveryShard)")
+    public Object onEveryShard(ProceedingJoinPoint joinPoint) {
+        // Spring's join point starts a fresh copy of the rest of the chain on every proceed(), so each shard
+        // thread goes through the transaction interceptor on its own
+        List<Object> results = bookShards.onEveryShard(() -> proceed(joinPoint));
+        Method method = method(joinPoint);
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            return null;
+        }
+        if (List.class.isAssignableFrom(returnType)) {
+            return concat(results, method.getAnnotation(EveryShard.class).distinctBy());
+        }
+        if (returnType == int.class || returnType == Integer.class) {
+            return results.stream().mapToInt(result -> (Integer) result).sum();
+        }
+        if (returnType == long.class || returnType == Long.class) {
+            return results.stream().mapToLong(result -> (Long) result).sum();
+        }
+        throw new IllegalStateException("@EveryShard can not combine the results of " + method(joinPoint));
+    }
+
+    private List<Object> concat(List<Object> results, String distinctBy) {
+        List<Object> all = new ArrayList<>();
+        Set<Object> seen = new HashSet<>();
+        for (Object result : results) {
+            for (Object element : (Collection<?>) result) {
+                if (distinctBy.isEmpty() || seen.add(property(element, distinctBy))) {
+                    all.add(element);
+                }
+            }
+        }
+        return all;
+    }
+
+    // a cached getter rather than a BeanWrapper per element, GET /books runs this for every book
+    private Object property(Object element, String name) {
+        Method getter = getters.computeIfAbsent(new Getter(element.getClass(), name), key -> {
+            PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(key.type(), key.property());
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                throw new IllegalStateException("@EveryShard(distinctBy) names no readable property of " + key.type() + ": " + name);
+            }
+            return descriptor.getReadMethod();
+        });
+        try {
+            return getter.invoke(element);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int shardOf(ShardKey.Type type, Object argument) {
+        if (type == ShardKey.Type.BOOK_ID) {
+            int shard = bookShards.shardOfBook((String) argument, bookRepository::existsById);
+            // a book that is nowhere: the method runs on shard 0 and answers with its own "not found"
+            return Math.max(shard, 0);
+        }
+        Object author = argument instanceof String || argument == null ? argument
+                : PropertyAccessorFactory.forBeanPropertyAccess(argument).getPropertyValue("author");
+        return bookShards.shardFor((String) author);
+    }
+
+    // the annotations are on the implementation, the join point may describe the interface method
+    private static Method method(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return AopUtils.getMostSpecificMethod(method, joinPoint.getTarget().getClass());
+    }
+
+    private static ShardKeyParameter findKeyParameter(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof ShardKey shardKey) {
+                    return new ShardKeyParameter(i, shardKey.value());
+                }
+            }
+        }
+        throw new IllegalStateException("No @ShardKey parameter on " + method);
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    private record ShardKeyParameter(int index, ShardKey.Type type) {
+    }
+
+    private record Getter(Class<?> type, String property) {
+    }
+}
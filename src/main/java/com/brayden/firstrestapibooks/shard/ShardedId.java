@@ -0,0 +1,15 @@
+package com.brayden.firstrestapibooks.shard;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Generates the id with ShardIds when the entity is inserted, like @GeneratedValue(strategy = UUID) but with the shard in it.
+@IdGeneratorType(ShardedIdGenerator.class)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardedId {
+}
@@ -0,0 +1,69 @@
+package com.brayden.firstrestapibooks.timing;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+
+// Ignores the flushes of the body (the message converters flush after writing it), so a body that fits in the
+// response buffer leaves the response uncommitted and ServerTimingFilter can still change the headers afterwards.
+// A larger body commits the response when the buffer fills up, like it would without this wrapper.
+class FlushDeferringResponse extends HttpServletResponseWrapper {
+    private ServletOutputStream outputStream;
+
+    FlushDeferringResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public void flushBuffer() {
+        // flushed by the container when the request ends
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new NoFlushOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    private static class NoFlushOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        NoFlushOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            // closing would commit the response too; the container closes it when the request ends
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.brayden.firstrestapibooks.timing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.Collection;
+import java.util.Optional;
+
+// Added to every Spring Data repository by ServerTimingConfig. The time of a repository call that was not
+// spent waiting for a connection, running SQL or beginning and committing the repository's own transaction
+// is counted as hydration (building entities from the rows).
+public class RepositoryTimingInterceptor implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        RequestTiming timing = RequestTiming.current();
+        if (timing == null) {
+            return invocation.proceed();
+        }
+        long jdbcBefore = timing.poolNanos() + timing.sqlNanos() + timing.txNanos();
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long elapsed = System.nanoTime() - start;
+        long jdbc = timing.poolNanos() + timing.sqlNanos() + timing.txNanos() - jdbcBefore;
+        timing.addHydrate(Math.max(0, elapsed - jdbc), rows(result));
+        return result;
+    }
+
+    // entities returned by the call; counts, flags and void results are not rows
+    private static long rows(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return result == null || result instanceof Number || result instanceof Boolean ? 0 : 1;
+    }
+}
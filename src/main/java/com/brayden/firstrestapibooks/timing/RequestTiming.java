@@ -0,0 +1,154 @@
+package com.brayden.firstrestapibooks.timing;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Time spent per phase of one request, filled in by the pieces along the way:
+ * the Hibernate session listener (pool wait, SQL), timeSql (JdbcTemplate SQL), the transaction manager
+ * (begin/commit), the repository interceptor (hydration), MapperBook (mapping) and ServerTimingFilter
+ * (serialization, total).
+ * Only exists while books.server-timing.enabled is on; everywhere else current() is null and nothing is measured.
+ * Work that runs on the shard threads adds to the same object, so with several shards the phases are summed
+ * over the shards and can be longer than the request.
+ */
+public class RequestTiming {
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder poolNanos = new LongAdder();
+    private final LongAdder sqlNanos = new LongAdder();
+    private final LongAdder txNanos = new LongAdder();
+    private final LongAdder hydrateNanos = new LongAdder();
+    private final LongAdder mapNanos = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private volatile long handlerEndNanos; // 0 until the controller has returned
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    // Runs the work with the given timing as the current one, e.g. on a shard thread.
+    public static <T> T callWith(RequestTiming timing, Supplier<T> work) {
+        RequestTiming previous = CURRENT.get();
+        set(timing);
+        try {
+            return work.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    static void set(RequestTiming timing) {
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+    }
+
+    // Times JDBC work that does not go through Hibernate (JdbcTemplate), which the session listener does not see.
+    // It counts as one statement, like a JDBC batch does.
+    public static <T> T timeSql(Supplier<T> work) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null) {
+            return work.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            timing.addSql(System.nanoTime() - start);
+        }
+    }
+
+    // Times a transaction begin, commit or rollback. The pool wait and the statements inside it (a commit flushes)
+    // are counted by the session listener already; the rest is the database beginning or committing.
+    public static void timeTransaction(Runnable step) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null) {
+            step.run();
+            return;
+        }
+        long countedBefore = timing.poolNanos() + timing.sqlNanos();
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } finally {
+            long counted = timing.poolNanos() + timing.sqlNanos() - countedBefore;
+            timing.txNanos.add(Math.max(0, System.nanoTime() - start - counted));
+        }
+    }
+
+    public void addPool(long nanos) {
+        poolNanos.add(nanos);
+    }
+
+    public void addSql(long nanos) {
+        sqlNanos.add(nanos);
+        statements.increment();
+    }
+
+    public void addHydrate(long nanos, long rowCount) {
+        hydrateNanos.add(nanos);
+        rows.add(rowCount);
+    }
+
+    public void addMap(long nanos) {
+        mapNanos.add(nanos);
+    }
+
+    public long sqlNanos() {
+        return sqlNanos.sum();
+    }
+
+    public long poolNanos() {
+        return poolNanos.sum();
+    }
+
+    public long txNanos() {
+        return txNanos.sum();
+    }
+
+    // Called when the controller returned and the body is about to be serialized.
+    public void markHandlerEnd() {
+        if (handlerEndNanos == 0) {
+            handlerEndNanos = System.nanoTime();
+        }
+    }
+
+    // The header as it can be sent before the body is serialized: it stops at the end of the controller ("app").
+    public String toServerTimingHeader() {
+        long appEnd = handlerEndNanos == 0 ? System.nanoTime() : handlerEndNanos;
+        return String.format(Locale.ROOT,
+                "pool;dur=%.2f;desc=\"connection wait\", db;dur=%.2f;desc=\"SQL\", tx;dur=%.2f;desc=\"begin/commit\", "
+                        + "hydrate;dur=%.2f;desc=\"entities\", map;dur=%.2f;desc=\"MapperBook\", app;dur=%.2f",
+                millis(poolNanos.sum()), millis(sqlNanos.sum()), millis(txNanos.sum()), millis(hydrateNanos.sum()),
+                millis(mapNanos.sum()), millis(appEnd - startNanos));
+    }
+
+    // With the serialization ("ser") up to endNanos, for a header sent after the body was written or a trailer.
+    public String toServerTimingHeader(long endNanos) {
+        long appEnd = handlerEndNanos == 0 ? endNanos : handlerEndNanos;
+        return toServerTimingHeader() + String.format(Locale.ROOT, ", ser;dur=%.2f;desc=\"JSON\"", millis(endNanos - appEnd));
+    }
+
+    // One line of key=value pairs with every phase, for the trace log.
+    public String toLogFields(long endNanos) {
+        long appEnd = handlerEndNanos == 0 ? endNanos : handlerEndNanos;
+        return String.format(Locale.ROOT,
+                "total_ms=%.2f pool_ms=%.2f db_ms=%.2f tx_ms=%.2f hydrate_ms=%.2f map_ms=%.2f serialize_ms=%.2f statements=%d rows=%d",
+                millis(endNanos - startNanos), millis(poolNanos.sum()), millis(sqlNanos.sum()), millis(txNanos.sum()),
+                millis(hydrateNanos.sum()), millis(mapNanos.sum()), millis(endNanos - appEnd), statements.sum(), rows.sum());
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.brayden.firstrestapibooks.timing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Starts the timing of a request, adds the Server-Timing header with the serialization ("ser") once the body
+// is written, and logs the phases of sampled or slow requests. A body larger than the response buffer has
+// already sent the headers by then; clients that send "TE: trailers" get the complete header as a trailer instead.
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // outermost, so the total includes the other filters
+@ConditionalOnProperty(name = "books.server-timing.enabled", havingValue = "true")
+public class ServerTimingFilter extends OncePerRequestFilter {
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private final double logSampleRate;
+    private final long logThresholdNanos;
+
+    public ServerTimingFilter(@Value("${books.server-timing.log-sample-rate:0}") double logSampleRate,
+                              @Value("${books.server-timing.log-threshold-ms:1000}") long logThresholdMs) {
+        this.logSampleRate = logSampleRate;
+        this.logThresholdNanos = TimeUnit.MILLISECONDS.toNanos(logThresholdMs);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestTiming timing = new RequestTiming();
+        if (acceptsTrailers(request)) {
+            response.setHeader(HttpHeaders.TRAILER, SERVER_TIMING);
+            response.setTrailerFields(() -> Map.of(SERVER_TIMING, timing.toServerTimingHeader(System.nanoTime())));
+        }
+        RequestTiming.set(timing);
+        try {
+            filterChain.doFilter(request, new FlushDeferringResponse(response));
+        } finally {
+            RequestTiming.set(null);
+            timing.markHandlerEnd();
+            // replaces the header of ServerTimingResponseAdvice unless a body larger than the buffer already sent it
+            if (!response.isCommitted()) {
+                response.setHeader(SERVER_TIMING, timing.toServerTimingHeader(System.nanoTime()));
+            }
+            long end = System.nanoTime();
+            String reason = end - timing.startNanos() >= logThresholdNanos ? "slow"
+                    : ThreadLocalRandom.current().nextDouble() < logSampleRate ? "sampled" : null;
+            if (reason != null) {
+                log.info("request-timing method={} path={} status={} reason={} {}", request.getMethod(),
+                        request.getRequestURI(), response.getStatus(), reason, timing.toLogFields(end));
+            }
+        }
+    }
+
+    private static boolean acceptsTrailers(HttpServletRequest request) {
+        String te = request.getHeader("TE");
+        return te != null && te.toLowerCase(Locale.ROOT).contains("trailers");
+    }
+}
@@ -0,0 +1,49 @@
+package com.brayden.firstrestapibooks.timing;
+
+import org.hibernate.SessionEventListener;
+
+// Hibernate creates one of these per session (hibernate.session.events.auto, set in ServerTimingConfig).
+// It picks up the request's timing when the session opens, so sessions outside a timed request cost nothing.
+public class TimingSessionEventListener implements SessionEventListener {
+    private final transient RequestTiming timing = RequestTiming.current();
+    private long acquisitionStart;
+    private long statementStart;
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        if (timing != null) {
+            acquisitionStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        if (timing != null) {
+            timing.addPool(System.nanoTime() - acquisitionStart);
+        }
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        if (timing != null) {
+            statementStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        if (timing != null) {
+            timing.addSql(System.nanoTime() - statementStart);
+        }
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        jdbcExecuteStatementStart();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        jdbcExecuteStatementEnd();
+    }
+}
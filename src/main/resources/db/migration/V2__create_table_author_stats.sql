@@ -0,0 +1,19 @@
+-- Per-author summary kept up to date by the service in the same transaction as every book write.
+-- price_sum / priced_count gives the average; books without a price only count towards book_count.
+CREATE TABLE author_stats (
+    author VARCHAR(255) NOT NULL PRIMARY KEY,
+    book_count BIGINT NOT NULL,
+    priced_count BIGINT NOT NULL,
+    price_sum DECIMAL(20, 2) NOT NULL,
+    min_price DECIMAL(10, 2) NULL,
+    max_price DECIMAL(10, 2) NULL
+);
+
+-- min/max are recomputed for a single author when its cheapest or most expensive book goes away
+CREATE INDEX idx_book_author ON book (author);
+
+INSERT INTO author_stats (author, book_count, priced_count, price_sum, min_price, max_price)
+SELECT author, COUNT(*), COUNT(price), COALESCE(SUM(price), 0), MIN(price), MAX(price)
+FROM book
+WHERE author IS NOT NULL
+GROUP BY author;
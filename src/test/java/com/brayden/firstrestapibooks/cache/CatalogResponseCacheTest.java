@@ -0,0 +1,134 @@
+package com.brayden.firstrestapibooks.cache;
+
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.event.BookCatalogChangedEvent;
+import com.brayden.firstrestapibooks.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CatalogResponseCacheTest {
+
+    @Mock
+    private BookService bookService;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private CatalogResponseCache catalogResponseCache;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        // a long rebuild delay keeps the background thread out of these tests
+        catalogResponseCache = new CatalogResponseCache(bookService, jsonMapper, true, 60_000, 60_000);
+
+        BookResponseDTO responseDTO = new BookResponseDTO();
+        responseDTO.setId("1");
+        responseDTO.setName("Sample Book");
+        responseDTO.setAuthor("Author Name");
+        responseDTO.setPrice("10.99");
+        when(bookService.findAllBooks()).thenReturn(List.of(responseDTO));
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogResponseCache.shutdown();
+    }
+
+    @Test
+    void testRefresh_whenEnabled_shouldStoreJsonAndGzip() throws IOException {
+        assertTrue(catalogResponseCache.refresh());
+
+        CatalogResponseCache.Snapshot snapshot = catalogResponseCache.current();
+        assertNotNull(snapshot);
+        assertEquals(1, snapshot.getBooks());
+        String json = new String(snapshot.getJson());
+        assertTrue(json.contains("\"name\":\"Sample Book\""));
+        // the gzip variant holds exactly the same JSON
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(snapshot.getGzip()))) {
+            assertArrayEquals(snapshot.getJson(), gzip.readAllBytes());
+        }
+        assertEquals(1, catalogResponseCache.getHits());
+    }
+
+    @Test
+    void testOnCatalogChanged_whenCached_shouldDropSnapshot() {
+        catalogResponseCache.refresh();
+
+        catalogResponseCache.onCatalogChanged(new BookCatalogChangedEvent());
+
+        assertNull(catalogResponseCache.current());
+        assertEquals(1, catalogResponseCache.getMisses());
+    }
+
+    @Test
+    void testRefresh_whenWriteHappensWhileBuilding_shouldDropResult() {
+        // the write "commits" while the catalog is being read
+        when(bookService.findAllBooks()).thenAnswer(invocation -> {
+            catalogResponseCache.onCatalogChanged(new BookCatalogChangedEvent());
+            return List.of();
+        });
+
+        assertFalse(catalogResponseCache.refresh());
+        assertNull(catalogResponseCache.current());
+        assertEquals(1, catalogResponseCache.getDiscarded());
+    }
+
+    @Test
+    void testWarmUp_whenWritesKeepOvertakingTheRebuild_shouldRetryWithGrowingDelays() throws InterruptedException {
+        CatalogResponseCache retrying = new CatalogResponseCache(bookService, jsonMapper, true, 50, 150);
+        AtomicInteger reads = new AtomicInteger();
+        when(bookService.findAllBooks()).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() <= 3) {
+                retrying.onCatalogChanged(new BookCatalogChangedEvent());
+            }
+            return List.of();
+        });
+        long start = System.nanoTime();
+        try {
+            retrying.warmUp();
+
+            long deadline = start + TimeUnit.SECONDS.toNanos(5);
+            while (retrying.getRebuilds() == 0) {
+                assertTrue(System.nanoTime() < deadline, "catalog was never rebuilt");
+                Thread.sleep(10);
+            }
+            // the retries waited 100, 150 and 150 ms: doubled from 50 and capped at 150
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+            assertEquals(3, retrying.getDiscarded());
+            assertEquals(4, reads.get());
+            assertNotNull(retrying.current());
+        } finally {
+            retrying.shutdown();
+        }
+    }
+
+    @Test
+    void testRefresh_whenDisabled_shouldNotQuery() {
+        catalogResponseCache.setEnabled(false);
+
+        assertFalse(catalogResponseCache.refresh());
+        assertNull(catalogResponseCache.current());
+        verify(bookService, never()).findAllBooks();
+    }
+}
@@ -0,0 +1,327 @@
+package com.brayden.firstrestapibooks.cache;
+
+import com.brayden.firstrestapibooks.concurrent.CircuitBreaker;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StaleWhileRevalidateCacheTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(2, Duration.ofMinutes(1));
+    private StaleWhileRevalidateCache<String, List<String>> cache = cache(100, Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testGet_whenDatabaseAnswers_shouldReturnFreshResult() {
+        StaleWhileRevalidateCache.Result<List<String>> result = cache.get("key", () -> List.of("a"));
+
+        assertEquals(List.of("a"), result.getValue());
+        assertFalse(result.isStale());
+        assertEquals(1, cache.getFresh());
+        assertEquals(1, cache.getEntries());
+    }
+
+    @Test
+    void testGet_whenLoadIsSlow_shouldServeStoredResultAndRefreshInBackground() throws Exception {
+        cache.get("key", () -> List.of("old"));
+        CountDownLatch release = new CountDownLatch(1);
+
+        StaleWhileRevalidateCache.Result<List<String>> result = cache.get("key", () -> {
+            await(release);
+            return List.of("new");
+        });
+
+        assertEquals(List.of("old"), result.getValue());
+        assertEquals(StaleWhileRevalidateCache.Reason.SLOW, result.getStaleReason());
+
+        // once the slow load finishes, its result is stored for the next reads
+        release.countDown();
+        waitUntil(() -> cache.get("key", () -> List.of("newest")).getValue().equals(List.of("newest")));
+    }
+
+    @Test
+    void testGet_whenLoadFails_shouldServeStoredResult() {
+        cache.get("key", () -> List.of("old"));
+
+        StaleWhileRevalidateCache.Result<List<String>> result = cache.get("key", () -> {
+            throw new IllegalStateException("database down");
+        });
+
+        assertEquals(List.of("old"), result.getValue());
+        assertEquals(StaleWhileRevalidateCache.Reason.ERROR, result.getStaleReason());
+        assertEquals(1, cache.getStale());
+    }
+
+    @Test
+    void testGet_whenLoadFailsWithoutStoredResult_shouldThrowTheFailure() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> cache.get("key", () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        assertEquals("database down", exception.getMessage());
+    }
+
+    @Test
+    void testGet_whenCircuitOpen_shouldNotCallTheDatabase() throws Exception {
+        cache.get("key", () -> List.of("old"));
+        failTwice("key");
+        waitUntil(() -> circuitBreaker.getState() == CircuitBreaker.State.OPEN);
+        AtomicInteger calls = new AtomicInteger();
+
+        StaleWhileRevalidateCache.Result<List<String>> result = cache.get("key", () -> {
+            calls.incrementAndGet();
+            return List.of("new");
+        });
+
+        assertEquals(StaleWhileRevalidateCache.Reason.CIRCUIT_OPEN, result.getStaleReason());
+        assertEquals(0, calls.get());
+        // a key that was never loaded has nothing to fall back on
+        ApiException apiException = assertThrows(ApiException.class, () -> cache.get("other", () -> List.of("x")));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, apiException.getHttpStatus());
+        assertEquals(1, cache.getUnavailable());
+    }
+
+    @Test
+    void testGet_whenClientError_shouldNotOpenTheCircuit() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ApiException.class, () -> cache.get("key", () -> {
+                throw new ApiException("not found", HttpStatus.NOT_FOUND);
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, cache.getLoadFailures());
+    }
+
+    @Test
+    void testGet_whenMaxWeightReached_shouldEvictLeastRecentlyUsed() {
+        cache = cache(10, Duration.ofHours(1));
+        cache.get("first", () -> List.of("1", "2", "3"));   // weight 4
+        cache.get("second", () -> List.of("1", "2", "3")); // weight 4
+        cache.get("first", () -> List.of("1", "2", "3"));  // first is now the most recently used
+
+        cache.get("third", () -> List.of("1"));            // weight 2, 10 in total would be fine
+        cache.get("fourth", () -> List.of("1"));           // 12 > 10, second goes
+
+        assertEquals(3, cache.getEntries());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(8, cache.getWeight());
+        // a result bigger than the whole cache is never stored
+        cache.get("huge", () -> List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"));
+        assertEquals(3, cache.getEntries());
+        assertEquals(1, cache.getOversized());
+    }
+
+    @Test
+    void testGet_whenStoredResultTooOld_shouldNotServeIt() {
+        cache = cache(100, Duration.ZERO);
+        cache.get("key", () -> List.of("old"));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key", () -> {
+            throw new IllegalStateException("database down");
+        }));
+    }
+
+    @Test
+    void testGet_whenSameKeyLoading_shouldShareTheLoad() {
+        // loads run right away until runNow is switched off, then they wait in pending
+        AtomicBoolean runNow = new AtomicBoolean(true);
+        Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        cache = new StaleWhileRevalidateCache<>(task -> {
+            if (runNow.get()) {
+                task.run();
+            } else {
+                pending.add(task);
+            }
+        }, circuitBreaker, List::size, 100, Duration.ofMillis(10), Duration.ofSeconds(5), Duration.ofHours(1));
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> loader = () -> List.of("v" + calls.incrementAndGet());
+        cache.get("key", loader);
+
+        runNow.set(false);
+        assertEquals(StaleWhileRevalidateCache.Reason.SLOW, cache.get("key", loader).getStaleReason());
+        assertEquals(StaleWhileRevalidateCache.Reason.SLOW, cache.get("key", loader).getStaleReason());
+
+        assertEquals(1, pending.size());
+        pending.poll().run();
+        runNow.set(true);
+        assertEquals(List.of("v3"), cache.get("key", loader).getValue());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testGet_whenNothingStored_shouldLoadOnTheCallersThread() {
+        AtomicInteger background = new AtomicInteger();
+        cache = new StaleWhileRevalidateCache<>(task -> background.incrementAndGet(), circuitBreaker, List::size, 100,
+                Duration.ofMillis(100), Duration.ofSeconds(5), Duration.ofHours(1));
+        Thread caller = Thread.currentThread();
+
+        assertEquals(List.of("true"), cache.get("key", () -> List.of(String.valueOf(Thread.currentThread() == caller))).getValue());
+        assertEquals(0, background.get());
+
+        // with a stored result the refresh goes to the executor, which here never runs it
+        assertEquals(List.of("true"), cache.get("key", () -> List.of("unused")).getValue());
+        assertEquals(1, background.get());
+    }
+
+    @Test
+    void testGet_whenBurstOfReadsOnHealthyDatabase_shouldNeverFailOrOpenTheCircuit() throws Exception {
+        // like StaleReadBookService: two refresh threads and no queue
+        ThreadPoolExecutor refreshPool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        ExecutorService callers = Executors.newFixedThreadPool(100);
+        try {
+            cache = new StaleWhileRevalidateCache<>(refreshPool, circuitBreaker, List::size, 1000,
+                    Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofHours(1));
+            Supplier<List<String>> slowQuery = () -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of("book");
+            };
+
+            // without stored results every read queries on its own thread
+            List<Future<StaleWhileRevalidateCache.Result<List<String>>>> reads = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String key = "author " + i;
+                reads.add(callers.submit(() -> cache.get(key, slowQuery)));
+            }
+            for (Future<StaleWhileRevalidateCache.Result<List<String>>> read : reads) {
+                assertFalse(read.get(10, TimeUnit.SECONDS).isStale());
+            }
+
+            // with one stored for every key, the reads that find both refresh threads busy get the stored result
+            reads.clear();
+            for (int i = 0; i < 100; i++) {
+                String key = "author " + i;
+                reads.add(callers.submit(() -> cache.get(key, slowQuery)));
+            }
+            for (Future<StaleWhileRevalidateCache.Result<List<String>>> read : reads) {
+                StaleWhileRevalidateCache.Result<List<String>> result = read.get(10, TimeUnit.SECONDS);
+                assertEquals(List.of("book"), result.getValue());
+                assertTrue(!result.isStale() || result.getStaleReason() == StaleWhileRevalidateCache.Reason.BUSY);
+            }
+
+            assertEquals(200, cache.getFresh() + cache.getStale());
+            assertEquals(0, cache.getUnavailable());
+            assertEquals(0, cache.getLoadFailures());
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        } finally {
+            callers.shutdownNow();
+            refreshPool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testGet_whenDatabaseHangsAndRefreshPoolIsFull_shouldServeStoredResultsAndOpenTheCircuit() throws Exception {
+        // one refresh thread and no queue; loads give up after 300 ms
+        ThreadPoolExecutor refreshPool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        CountDownLatch databaseBack = new CountDownLatch(1);
+        CountDownLatch hangingOnCaller = new CountDownLatch(1);
+        Supplier<List<String>> hangingQuery = () -> {
+            await(databaseBack);
+            return List.of("late");
+        };
+        try {
+            cache = new StaleWhileRevalidateCache<>(refreshPool, circuitBreaker, List::size, 100,
+                    Duration.ofMillis(50), Duration.ofMillis(300), Duration.ofHours(1));
+            cache.get("a", () -> List.of("old a"));
+            cache.get("b", () -> List.of("old b"));
+
+            // the refresh of a takes the only refresh thread and hangs there
+            assertEquals(StaleWhileRevalidateCache.Reason.SLOW, cache.get("a", hangingQuery).getStaleReason());
+
+            // b is answered from its stored result instead of hanging on this thread as well
+            long start = System.nanoTime();
+            StaleWhileRevalidateCache.Result<List<String>> b = cache.get("b", hangingQuery);
+            assertEquals(List.of("old b"), b.getValue());
+            assertEquals(StaleWhileRevalidateCache.Reason.BUSY, b.getStaleReason());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            // c has nothing stored, so its first read queries on its own thread; a read joining it gets a 503
+            // at refresh-timeout rather than waiting for the database
+            Future<StaleWhileRevalidateCache.Result<List<String>>> leader = executor.submit(() -> cache.get("c", () -> {
+                hangingOnCaller.countDown();
+                return hangingQuery.get();
+            }));
+            await(hangingOnCaller);
+            start = System.nanoTime();
+            ApiException apiException = assertThrows(ApiException.class, () -> cache.get("c", hangingQuery));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, apiException.getHttpStatus());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            // both hanging loads count as failures, so the breaker opens while they are still stuck
+            waitUntil(() -> circuitBreaker.getState() == CircuitBreaker.State.OPEN);
+            assertEquals(2, cache.getLoadFailures());
+            assertEquals(StaleWhileRevalidateCache.Reason.CIRCUIT_OPEN, cache.get("b", hangingQuery).getStaleReason());
+
+            // the leader itself gets the same 503 once its query returns
+            databaseBack.countDown();
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertTrue(leaderFailure.getCause() instanceof ApiException);
+        } finally {
+            databaseBack.countDown();
+            refreshPool.shutdownNow();
+        }
+    }
+
+    private StaleWhileRevalidateCache<String, List<String>> cache(long maxWeight, Duration maxStale) {
+        return new StaleWhileRevalidateCache<>(executor, circuitBreaker, List::size, maxWeight,
+                Duration.ofMillis(100), Duration.ofSeconds(5), maxStale);
+    }
+
+    private void failTwice(String key) {
+        for (int i = 0; i < 2; i++) {
+            StaleWhileRevalidateCache.Result<List<String>> result = cache.get(key, () -> {
+                throw new IllegalStateException("database down");
+            });
+            assertTrue(result.isStale());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
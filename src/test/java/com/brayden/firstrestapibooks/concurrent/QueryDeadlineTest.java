@@ -0,0 +1,43 @@
+package com.brayden.firstrestapibooks.concurrent;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class QueryDeadlineTest {
+
+    @Test
+    void testTransactionTimeout_whenNoDeadline_shouldKeepTheConfiguredTimeout() {
+        assertEquals(TransactionDefinition.TIMEOUT_DEFAULT, QueryDeadline.transactionTimeout(TransactionDefinition.TIMEOUT_DEFAULT));
+        assertEquals(30, QueryDeadline.transactionTimeout(30));
+    }
+
+    @Test
+    void testTransactionTimeout_whenDeadlineSet_shouldRoundTheTimeLeftUp() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+
+        assertEquals(2, QueryDeadline.callWith(deadline, () -> QueryDeadline.transactionTimeout(TransactionDefinition.TIMEOUT_DEFAULT)));
+        // a shorter configured timeout wins
+        assertEquals(1, QueryDeadline.callWith(deadline, () -> QueryDeadline.transactionTimeout(1)));
+    }
+
+    @Test
+    void testTransactionTimeout_whenDeadlinePassed_shouldBeZero() {
+        assertEquals(0, QueryDeadline.callWith(System.nanoTime() - 1, () -> QueryDeadline.transactionTimeout(30)));
+    }
+
+    @Test
+    void testCallWith_shouldRestoreThePreviousDeadline() {
+        QueryDeadline.callWith(1L, () -> {
+            assertNull(QueryDeadline.callWith(null, QueryDeadline::current));
+            assertEquals(1L, QueryDeadline.current());
+            return null;
+        });
+
+        assertNull(QueryDeadline.current());
+    }
+}
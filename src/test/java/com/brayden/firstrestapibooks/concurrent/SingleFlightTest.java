@@ -0,0 +1,154 @@
+package com.brayden.firstrestapibooks.concurrent;
+
+import com.brayden.firstrestapibooks.exception.ApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testExecute_whenSameKeyConcurrently_shouldRunLoaderOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // the leader blocks in the loader until all other callers are waiting for it
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }, TIMEOUT)));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+        for (int i = 0; i < 5; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }, TIMEOUT)));
+        }
+        waitUntil(() -> singleFlight.getCoalesced() == 5);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("value", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.getExecutions());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void testExecute_whenLeaderFails_shouldThrowSameExceptionToEveryCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ApiException failure = new ApiException("database down", HttpStatus.SERVICE_UNAVAILABLE);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            throw failure;
+        }, TIMEOUT));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+        Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "unused", TIMEOUT));
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+        release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertSame(failure, leaderError.getCause());
+        assertSame(failure, followerError.getCause());
+        assertEquals(1, singleFlight.getFailures());
+
+        // a failed load is not remembered, the next call runs the loader again
+        assertEquals("retry", singleFlight.execute("key", () -> "retry", TIMEOUT));
+    }
+
+    @Test
+    void testExecute_whenFollowerTimesOut_shouldThrowServiceUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return "value";
+        }, TIMEOUT));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+
+        ApiException apiException = assertThrows(ApiException.class, () -> {
+            singleFlight.execute("key", () -> "unused", Duration.ofMillis(50));
+        });
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, apiException.getHttpStatus());
+        assertEquals(1, singleFlight.getTimeouts());
+
+        release.countDown();
+        // the leader is not affected by the follower giving up
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testExecute_whenDifferentKeys_shouldNotShare() {
+        assertEquals("a", singleFlight.execute("a", () -> "a", TIMEOUT));
+        assertEquals("b", singleFlight.execute("b", () -> "b", TIMEOUT));
+
+        assertEquals(2, singleFlight.getExecutions());
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void testForgetAll_whenLoadRunning_shouldLetNextCallerStartNewLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            await(release);
+            return "old";
+        }, TIMEOUT));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+
+        singleFlight.forgetAll();
+
+        assertEquals("new", singleFlight.execute("key", () -> "new", TIMEOUT));
+        release.countDown();
+        assertEquals("old", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            Thread.sleep(1);
+        }
+    }
+}
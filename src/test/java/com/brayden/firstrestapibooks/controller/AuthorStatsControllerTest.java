@@ -0,0 +1,91 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AuthorStatsController.class)
+public class AuthorStatsControllerTest {
+
+    @MockitoBean
+    private AuthorStatsService authorStatsService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private AuthorStatsDTO authorStatsDTO;
+
+    @BeforeEach
+    void setUp() {
+        authorStatsDTO = new AuthorStatsDTO();
+        authorStatsDTO.setAuthor("authorTest");
+        authorStatsDTO.setBookCount(2);
+        authorStatsDTO.setAveragePrice("10.50");
+        authorStatsDTO.setMinPrice("10.00");
+        authorStatsDTO.setMaxPrice("11.00");
+    }
+
+    @Test
+    void testFindByAuthor_whenStatsExist_shouldReturnStats() throws Exception {
+        when(authorStatsService.findByAuthor("authorTest")).thenReturn(authorStatsDTO);
+
+        mockMvc.perform(get("/authors/{author}/stats", "authorTest"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.author").value("authorTest"))
+                .andExpect(jsonPath("$.bookCount").value(2))
+                .andExpect(jsonPath("$.averagePrice").value("10.50"))
+                .andExpect(jsonPath("$.minPrice").value("10.00"))
+                .andExpect(jsonPath("$.maxPrice").value("11.00"));
+
+        verify(authorStatsService).findByAuthor("authorTest");
+    }
+
+    @Test
+    void testFindByAuthor_whenNoStats_shouldReturnApiException() throws Exception {
+        String errorMessage = "No books found for author: authorTest";
+        when(authorStatsService.findByAuthor("authorTest")).thenThrow(new ApiException(errorMessage, HttpStatus.NOT_FOUND));
+
+        mockMvc.perform(get("/authors/{author}/stats", "authorTest"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value(errorMessage));
+    }
+
+    @Test
+    void testFindAll_whenStatsExist_shouldReturnList() throws Exception {
+        when(authorStatsService.findAll()).thenReturn(List.of(authorStatsDTO));
+
+        mockMvc.perform(get("/authors/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].author").value("authorTest"));
+    }
+
+    @Test
+    void testRebuild_shouldReturnNumberOfAuthors() throws Exception {
+        when(authorStatsService.rebuild()).thenReturn(5);
+
+        mockMvc.perform(post("/authors/stats/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("5"));
+
+        verify(authorStatsService).rebuild();
+    }
+}
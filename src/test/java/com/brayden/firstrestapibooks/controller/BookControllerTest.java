@@ -1,5 +1,12 @@
 package com.brayden.firstrestapibooks.controller;
 
+import com.brayden.firstrestapibooks.cache.CatalogResponseCache;
+import com.brayden.firstrestapibooks.cache.StaleResponseAdvice;
+import com.brayden.firstrestapibooks.cache.StaleWhileRevalidateCache;
+import com.brayden.firstrestapibooks.dto.BookIdsRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookImportErrorDTO;
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
 import com.brayden.firstrestapibooks.exception.ApiException;
@@ -14,33 +21,47 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(BookController.class)
+// stale reads are on so that StaleResponseAdvice is loaded
+@WebMvcTest(value = BookController.class, properties = "books.stale-reads.enabled=true")
 @Import(BookControllerTest.JacksonTestConfig.class)
 public class BookControllerTest {
 
     @MockitoBean
     private BookService bookService;
 
+    // The mock returns no snapshot, so GET /books takes the normal path unless a test says otherwise.
+    @MockitoBean
+    private CatalogResponseCache catalogResponseCache;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -103,6 +124,89 @@ public class BookControllerTest {
         verify(bookService).findAllBooks();
     }
 
+    @Test
+    void testFindAllBooks_whenCatalogCached_shouldReturnCachedBytes() throws Exception {
+        byte[] json = "[{\"id\":\"1\"}]".getBytes();
+        when(catalogResponseCache.current()).thenReturn(new CatalogResponseCache.Snapshot(json, new byte[]{31, -117}, 1));
+
+        mockMvc.perform(get("/books"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().bytes(json));
+
+        // the service is not called at all on a cache hit
+        verify(bookService, never()).findAllBooks();
+    }
+
+    @Test
+    void testFindAllBooks_whenCatalogCachedAndGzipAccepted_shouldReturnGzipBytes() throws Exception {
+        byte[] gzip = {31, -117, 8, 0};
+        when(catalogResponseCache.current()).thenReturn(new CatalogResponseCache.Snapshot("[]".getBytes(), gzip, 0));
+
+        mockMvc.perform(get("/books").header("Accept-Encoding", "deflate, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().bytes(gzip));
+    }
+
+    @Test
+    void testAcceptsGzip_whenQualityIsZero_shouldReturnFalse() {
+        assertTrue(BookController.acceptsGzip("gzip"));
+        assertTrue(BookController.acceptsGzip("br, GZIP;q=0.5"));
+        assertFalse(BookController.acceptsGzip("gzip;q=0"));
+        assertFalse(BookController.acceptsGzip("gzipped, identity"));
+        assertFalse(BookController.acceptsGzip(null));
+    }
+
+    // ---- findByIds ----
+
+    @Test
+    void testFindByIds_whenIdsQueryParam_shouldReturnBooksAndNotFound() throws Exception {
+        BookMultiGetResponseDTO response = new BookMultiGetResponseDTO();
+        response.getBooks().add(bookResponseDTO);
+        response.getNotFound().add("2");
+        when(bookService.findByIds(List.of("1", "2"))).thenReturn(response);
+
+        mockMvc.perform(get("/books").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books", hasSize(1)))
+                .andExpect(jsonPath("$.books[0].id").value(bookResponseDTO.getId()))
+                .andExpect(jsonPath("$.notFound[0]").value("2"));
+
+        verify(bookService).findByIds(List.of("1", "2"));
+        // ?ids= must not fall through to the full listing
+        verify(bookService, never()).findAllBooks();
+    }
+
+    @Test
+    void testFindByIdsPost_whenIdsInBody_shouldReturnBooks() throws Exception {
+        BookIdsRequestDTO request = new BookIdsRequestDTO();
+        request.setIds(List.of("1"));
+        BookMultiGetResponseDTO response = new BookMultiGetResponseDTO();
+        response.getBooks().add(bookResponseDTO);
+        when(bookService.findByIds(List.of("1"))).thenReturn(response);
+
+        mockMvc.perform(post("/books/multi-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books[0].name").value(bookResponseDTO.getName()))
+                .andExpect(jsonPath("$.notFound").isEmpty());
+    }
+
+    @Test
+    void testFindByIdsPost_whenIdsMissing_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/books/multi-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("ids is required"));
+
+        verify(bookService, never()).findByIds(any());
+    }
+
     // ---- createBook ----
 
     @Test
@@ -232,8 +336,76 @@ public class BookControllerTest {
 
         mockMvc.perform(get("/books/author/{author}", author))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isEmpty());
+                .andExpect(jsonPath("$").isEmpty())
+                .andExpect(header().doesNotExist("Stale-Reason"));
 
         verify(bookService).findByAuthor(author);
     }
+
+    @Test
+    void testFindByAuthor_whenServedStale_shouldSetAgeAndStaleReasonHeaders() throws Exception {
+        String author = bookResponseDTO.getAuthor();
+
+        when(bookService.findByAuthor(author)).thenAnswer(invocation -> {
+            StaleResponseAdvice.markStale(StaleWhileRevalidateCache.Reason.CIRCUIT_OPEN, 42_500);
+            return List.of(bookResponseDTO);
+        });
+
+        mockMvc.perform(get("/books/author/{author}", author))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Age", "42"))
+                .andExpect(header().string("Stale-Reason", "circuit-open"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    // ---- importBooks ----
+
+    @Test
+    void testImportBooks_whenCsvBody_shouldReturnImportSummary() throws Exception {
+        BookImportResultDTO result = new BookImportResultDTO();
+        result.setAccepted(1);
+        result.setRejected(1);
+        result.getErrors().add(new BookImportErrorDTO(3, "name is required"));
+        when(bookService.importBooks(any(InputStream.class))).thenReturn(result);
+
+        mockMvc.perform(post("/books/import")
+                        .contentType("text/csv")
+                        .content("name,author,price\nnameTest,authorTest,1\n,authorTest,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3))
+                .andExpect(jsonPath("$.errors[0].error").value("name is required"));
+
+        verify(bookService).importBooks(any(InputStream.class));
+    }
+
+    @Test
+    void testImportBooks_whenMultipartFile_shouldReturnImportSummary() throws Exception {
+        BookImportResultDTO result = new BookImportResultDTO();
+        result.setAccepted(1);
+        when(bookService.importBooks(any(InputStream.class))).thenReturn(result);
+
+        MockMultipartFile file = new MockMultipartFile("file", "books.csv", "text/csv",
+                "name\nnameTest\n".getBytes());
+
+        mockMvc.perform(multipart("/books/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.errors").isEmpty());
+
+        verify(bookService).importBooks(any(InputStream.class));
+    }
+
+    @Test
+    void testImportBooks_whenMultipartFileTooLarge_shouldReturn413() throws Exception {
+        when(bookService.importBooks(any(InputStream.class))).thenThrow(new MaxUploadSizeExceededException(1024));
+
+        MockMultipartFile file = new MockMultipartFile("file", "books.csv", "text/csv",
+                "name\nnameTest\n".getBytes());
+
+        mockMvc.perform(multipart("/books/import").file(file))
+                .andExpect(status().isContentTooLarge())
+                .andExpect(jsonPath("$.error").exists());
+    }
 }
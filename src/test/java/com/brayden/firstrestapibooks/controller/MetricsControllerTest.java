@@ -0,0 +1,87 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.cache.CatalogResponseCache;
+import com.brayden.firstrestapibooks.dto.CoalescingStatsDTO;
+import com.brayden.firstrestapibooks.dto.StaleReadStatsDTO;
+import com.brayden.firstrestapibooks.service.CoalescingMetrics;
+import com.brayden.firstrestapibooks.service.StaleReadMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(MetricsController.class)
+public class MetricsControllerTest {
+
+    @MockitoBean
+    private CoalescingMetrics coalescingMetrics;
+
+    @MockitoBean
+    private CatalogResponseCache catalogResponseCache;
+
+    @MockitoBean
+    private StaleReadMetrics staleReadMetrics;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testCoalescing_shouldReturnCounters() throws Exception {
+        CoalescingStatsDTO counters = new CoalescingStatsDTO();
+        counters.setExecutions(1);
+        when(coalescingMetrics.coalescingStats()).thenReturn(counters);
+
+        mockMvc.perform(get("/metrics/coalescing"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.executions").value(1))
+                .andExpect(jsonPath("$.coalesced").value(0))
+                .andExpect(jsonPath("$.failures").value(0))
+                .andExpect(jsonPath("$.inFlight").value(0));
+    }
+
+    @Test
+    void testCatalogCache_shouldReturnCounters() throws Exception {
+        when(catalogResponseCache.isEnabled()).thenReturn(true);
+        when(catalogResponseCache.getHits()).thenReturn(10L);
+        when(catalogResponseCache.getMisses()).thenReturn(2L);
+        when(catalogResponseCache.getRebuilds()).thenReturn(1L);
+        when(catalogResponseCache.getDiscarded()).thenReturn(3L);
+
+        mockMvc.perform(get("/metrics/catalog-cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true))
+                .andExpect(jsonPath("$.hits").value(10))
+                .andExpect(jsonPath("$.misses").value(2))
+                .andExpect(jsonPath("$.rebuilds").value(1))
+                .andExpect(jsonPath("$.discarded").value(3));
+    }
+
+    @Test
+    void testStaleReads_shouldReturnCounters() throws Exception {
+        StaleReadStatsDTO stats = new StaleReadStatsDTO();
+        stats.setEnabled(true);
+        stats.setFresh(1);
+        stats.setEntries(1);
+        stats.setBooks(2);
+        stats.setCatalogBooks(5);
+        stats.setCircuitBreaker("CLOSED");
+        when(staleReadMetrics.staleReadStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/metrics/stale-reads"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true))
+                .andExpect(jsonPath("$.fresh").value(1))
+                .andExpect(jsonPath("$.stale").value(0))
+                .andExpect(jsonPath("$.entries").value(1))
+                .andExpect(jsonPath("$.books").value(2))
+                .andExpect(jsonPath("$.catalogBooks").value(5))
+                .andExpect(jsonPath("$.oversized").value(0))
+                .andExpect(jsonPath("$.circuitBreaker").value("CLOSED"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.brayden.firstrestapibooks.controller;
+
+import com.brayden.firstrestapibooks.dto.ShardRebalanceResultDTO;
+import com.brayden.firstrestapibooks.dto.ShardStatsDTO;
+import com.brayden.firstrestapibooks.service.ShardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ShardController.class)
+public class ShardControllerTest {
+
+    @MockitoBean
+    private ShardService shardService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testFindShardStats_shouldReturnOneEntryPerShard() throws Exception {
+        ShardStatsDTO first = new ShardStatsDTO();
+        first.setShard(0);
+        first.setBooks(10);
+        ShardStatsDTO second = new ShardStatsDTO();
+        second.setShard(1);
+        second.setBooks(5);
+        second.setMisplacedAuthors(2);
+        when(shardService.findShardStats()).thenReturn(List.of(first, second));
+
+        mockMvc.perform(get("/shards"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].books").value(5))
+                .andExpect(jsonPath("$[1].misplacedAuthors").value(2));
+    }
+
+    @Test
+    void testRebalance_shouldReturnMovedCounts() throws Exception {
+        ShardRebalanceResultDTO result = new ShardRebalanceResultDTO();
+        result.setAuthorsMoved(3);
+        result.setBooksMoved(12);
+        when(shardService.rebalance()).thenReturn(result);
+
+        mockMvc.perform(post("/shards/rebalance"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authorsMoved").value(3))
+                .andExpect(jsonPath("$.booksMoved").value(12));
+
+        verify(shardService).rebalance();
+    }
+}
@@ -0,0 +1,79 @@
+package com.brayden.firstrestapibooks.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CsvReaderTest {
+
+    @Test
+    void testNext_whenPlainRows_shouldReturnFieldsAndLineNumbers() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("name,author\r\nBook A,Author A\n\nBook B,\n"), 100);
+
+        CsvRecord header = reader.next();
+        CsvRecord first = reader.next();
+        // the blank line 3 is skipped
+        CsvRecord second = reader.next();
+
+        assertEquals(List.of("name", "author"), header.getFields());
+        assertEquals(1, header.getLine());
+        assertEquals(List.of("Book A", "Author A"), first.getFields());
+        assertEquals(2, first.getLine());
+        assertEquals(List.of("Book B", ""), second.getFields());
+        assertEquals(4, second.getLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testNext_whenQuotedFields_shouldHandleCommasQuotesAndLineBreaks() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"Hello, \"\"World\"\"\",\"two\nlines\"\nnext,row"), 100);
+
+        CsvRecord quoted = reader.next();
+        CsvRecord next = reader.next();
+
+        assertEquals(List.of("Hello, \"World\"", "two\nlines"), quoted.getFields());
+        assertNull(quoted.getError());
+        // the record above spans lines 1 and 2
+        assertEquals(3, next.getLine());
+    }
+
+    @Test
+    void testNext_whenByteOrderMark_shouldSkipIt() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\uFEFFname\n"), 100);
+
+        assertEquals(List.of("name"), reader.next().getFields());
+    }
+
+    @Test
+    void testNext_whenMalformedQuotes_shouldReturnError() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"closed\"text,x\nok,row\n\"never closed"), 100);
+
+        CsvRecord malformed = reader.next();
+        CsvRecord ok = reader.next();
+        CsvRecord unclosed = reader.next();
+
+        assertEquals("malformed quotes", malformed.getError());
+        assertEquals(List.of("ok", "row"), ok.getFields());
+        assertEquals("malformed quotes", unclosed.getError());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testNext_whenRecordTooLong_shouldSkipRecordAndContinue() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a".repeat(50) + ",b\nshort\n"), 10);
+
+        CsvRecord tooLong = reader.next();
+        CsvRecord next = reader.next();
+
+        assertNotNull(tooLong.getError());
+        assertEquals(List.of(), tooLong.getFields());
+        assertEquals(List.of("short"), next.getFields());
+        assertEquals(2, next.getLine());
+    }
+}
@@ -0,0 +1,100 @@
+package com.brayden.firstrestapibooks.loadtest;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Fills the book table with a large synthetic catalog straight through JDBC batch inserts.
+ * Authors follow a Zipf distribution so a few authors own a lot of books, like a real catalog.
+ * The same seed always produces the same rows, so runs can be compared across commits.
+ */
+public class BookDataSeeder {
+    private static final String INSERT_SQL = "INSERT INTO book (id, name, author, price) VALUES (?, ?, ?, ?)";
+    private static final int BATCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random;
+    private final double[] authorCumulative;
+
+    public BookDataSeeder(JdbcTemplate jdbcTemplate, int authors, double skew, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.random = new Random(seed);
+        this.authorCumulative = zipfCumulative(authors, skew);
+    }
+
+    public static String authorName(int rank) {
+        return "Author " + rank;
+    }
+
+    // Picks an author rank (1 = most popular) using the same skew as the seeded data.
+    public int nextAuthorRank(Random rnd) {
+        int index = Arrays.binarySearch(authorCumulative, rnd.nextDouble());
+        // binarySearch returns (-(insertion point) - 1) when the exact value is not found
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    /**
+     * Inserts {@code count} books and keeps up to {@code sampleIds.length} of the generated ids
+     * so scenarios can update and delete rows that really exist.
+     */
+    public int seed(int count, String[] sampleIds) {
+        int sampleEvery = Math.max(1, count / Math.max(1, sampleIds.length));
+        int sampled = 0;
+        int inserted = 0;
+        while (inserted < count) {
+            int size = Math.min(BATCH_SIZE, count - inserted);
+            String[][] rows = new String[size][];
+            for (int i = 0; i < size; i++) {
+                rows[i] = nextRow();
+                if ((inserted + i) % sampleEvery == 0 && sampled < sampleIds.length) {
+                    sampleIds[sampled++] = rows[i][0];
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setString(1, rows[i][0]);
+                    ps.setString(2, rows[i][1]);
+                    ps.setString(3, rows[i][2]);
+                    ps.setString(4, rows[i][3]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows.length;
+                }
+            });
+            inserted += size;
+        }
+        return sampled;
+    }
+
+    private String[] nextRow() {
+        String id = new UUID(random.nextLong(), random.nextLong()).toString();
+        String name = "Book " + Integer.toHexString(random.nextInt());
+        String author = authorName(nextAuthorRank(random));
+        String price = BigDecimal.valueOf(100 + random.nextInt(9_900), 2).toPlainString();
+        return new String[]{id, name, author, price};
+    }
+
+    private static double[] zipfCumulative(int authors, double skew) {
+        double[] cumulative = new double[authors];
+        double total = 0;
+        for (int rank = 1; rank <= authors; rank++) {
+            total += 1.0 / Math.pow(rank, skew);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < authors; i++) {
+            cumulative[i] = cumulative[i] / total;
+        }
+        cumulative[authors - 1] = 1.0;
+        return cumulative;
+    }
+}
@@ -0,0 +1,267 @@
+package com.brayden.firstrestapibooks.loadtest;
+
+import com.brayden.firstrestapibooks.cache.CatalogResponseCache;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Run with: mvn -Ploadtest test
+// Results are appended to the file in loadtest.report (target/loadtest/results.csv by default).
+@Slf4j
+@Tag("loadtest")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS) // lets @BeforeAll use the injected beans
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class) // writes change the data, so keep the order fixed
+public class BookLoadTest {
+
+    // The endpoints of BookController that the scenarios call.
+    // FIND_ALL_GZIP is GET /books with Accept-Encoding: gzip.
+    enum Endpoint { FIND_ALL, FIND_ALL_GZIP, FIND_BY_AUTHOR, CREATE, UPDATE, DELETE }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthorStatsService authorStatsService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Value("${loadtest.books}")
+    private int books;
+    @Value("${loadtest.authors}")
+    private int authors;
+    @Value("${loadtest.author-skew}")
+    private double authorSkew;
+    @Value("${loadtest.seed}")
+    private long seed;
+    @Value("${loadtest.threads}")
+    private int threads;
+    @Value("${loadtest.operations}")
+    private int operations;
+    @Value("${loadtest.listing-operations}")
+    private int listingOperations;
+    @Value("${loadtest.report}")
+    private String reportFile;
+    @Value("${loadtest.label:}")
+    private String label;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private BookDataSeeder seeder;
+    // ids that exist in the table: the first half is used for updates, the second half for deletes
+    private String[] knownIds;
+    private int updatableIds;
+    private final AtomicInteger nextDeleteId = new AtomicInteger();
+
+    @BeforeAll
+    void seedCatalog() {
+        jdbcTemplate.update("DELETE FROM book");
+        seeder = new BookDataSeeder(jdbcTemplate, authors, authorSkew, seed);
+
+        long start = System.nanoTime();
+        String[] sample = new String[Math.min(books, 20_000)];
+        int sampled = seeder.seed(books, sample);
+        knownIds = Arrays.copyOf(sample, sampled);
+        updatableIds = sampled / 2;
+        nextDeleteId.set(updatableIds);
+        log.info("Seeded {} books for {} authors in {} ms",
+                books, authors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        // the seeder writes around the service, so the author summary table is rebuilt once afterwards
+        start = System.nanoTime();
+        authorStatsService.rebuild();
+        log.info("Rebuilt author statistics in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (label.isBlank()) {
+            label = gitCommit();
+        }
+    }
+
+    @Test
+    @Order(1)
+    void readHeavy() throws Exception {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        weights.put(Endpoint.FIND_ALL, 1);
+        weights.put(Endpoint.FIND_BY_AUTHOR, 89);
+        weights.put(Endpoint.CREATE, 5);
+        weights.put(Endpoint.UPDATE, 4);
+        weights.put(Endpoint.DELETE, 1);
+        run("read-heavy", weights);
+    }
+
+    @Test
+    @Order(2)
+    void writeHeavy() throws Exception {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        weights.put(Endpoint.FIND_BY_AUTHOR, 10);
+        weights.put(Endpoint.CREATE, 50);
+        weights.put(Endpoint.UPDATE, 30);
+        weights.put(Endpoint.DELETE, 10);
+        run("write-heavy", weights);
+    }
+
+    @Test
+    @Order(3)
+    void mixed() throws Exception {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        weights.put(Endpoint.FIND_ALL, 1);
+        weights.put(Endpoint.FIND_BY_AUTHOR, 49);
+        weights.put(Endpoint.CREATE, 25);
+        weights.put(Endpoint.UPDATE, 20);
+        weights.put(Endpoint.DELETE, 5);
+        run("mixed", weights);
+    }
+
+    // GET /books only, first through the normal path, then from the pre-encoded catalog response cache.
+    // Compare throughput_rps and cpu_ms_per_request of the catalog-uncached and catalog-cached lines.
+    @Test
+    @Order(4)
+    void catalogListing() throws Exception {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        weights.put(Endpoint.FIND_ALL, 1);
+        boolean wasEnabled = catalogResponseCache.isEnabled();
+        try {
+            catalogResponseCache.setEnabled(false);
+            run("catalog-uncached", weights, listingOperations);
+
+            catalogResponseCache.setEnabled(true);
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+            while (!catalogResponseCache.refresh()) {
+                assertTrue(System.nanoTime() < deadline, "catalog response cache was not built");
+            }
+            run("catalog-cached", weights, listingOperations);
+
+            weights.put(Endpoint.FIND_ALL, 0);
+            weights.put(Endpoint.FIND_ALL_GZIP, 1);
+            run("catalog-cached-gzip", weights, listingOperations);
+        } finally {
+            catalogResponseCache.setEnabled(wasEnabled);
+        }
+    }
+
+    private void run(String scenario, Map<Endpoint, Integer> weights) throws Exception {
+        run(scenario, weights, operations);
+    }
+
+    private void run(String scenario, Map<Endpoint, Integer> weights, int operations) throws Exception {
+        Endpoint[] picks = weights.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Endpoint[]::new);
+
+        LoadTestReport report = new LoadTestReport(scenario);
+        AtomicInteger remaining = new AtomicInteger(operations);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+        report.start();
+        for (int t = 0; t < threads; t++) {
+            Random rnd = new Random(seed + scenario.hashCode() + t); // same traffic on every run
+            workers.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    Endpoint endpoint = picks[rnd.nextInt(picks.length)];
+                    long start = System.nanoTime();
+                    boolean error;
+                    try {
+                        error = call(endpoint, rnd) >= 400;
+                    } catch (IOException | InterruptedException e) {
+                        error = true;
+                    }
+                    report.record(endpoint.name(), System.nanoTime() - start, error);
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(1, TimeUnit.HOURS), "scenario did not finish");
+        report.stop();
+
+        report.appendTo(Path.of(reportFile), label);
+        assertTrue(report.totalErrors() < operations / 100 + 1, "too many failed requests in " + scenario);
+    }
+
+    private int call(Endpoint endpoint, Random rnd) throws IOException, InterruptedException {
+        HttpRequest.Builder request = switch (endpoint) {
+            case FIND_ALL -> HttpRequest.newBuilder(uri("/books")).GET();
+            case FIND_ALL_GZIP -> HttpRequest.newBuilder(uri("/books")).header("Accept-Encoding", "gzip").GET();
+            case FIND_BY_AUTHOR -> HttpRequest.newBuilder(uri("/books/author/"
+                    + URLEncoder.encode(BookDataSeeder.authorName(seeder.nextAuthorRank(rnd)), StandardCharsets.UTF_8)
+                    .replace("+", "%20"))).GET();
+            case CREATE -> HttpRequest.newBuilder(uri("/books"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(bookJson(rnd)));
+            case UPDATE -> HttpRequest.newBuilder(uri("/books/" + knownIds[rnd.nextInt(Math.max(1, updatableIds))]))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(bookJson(rnd)));
+            case DELETE -> HttpRequest.newBuilder(uri("/books/" + nextDeleteId())).DELETE();
+        };
+        // the body is still read to the end, so the timing includes transferring the response
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private String nextDeleteId() {
+        int index = nextDeleteId.getAndIncrement();
+        // once the pool runs out the delete returns 404, which shows up as an error in the report
+        return index < knownIds.length ? knownIds[index] : "missing-" + index;
+    }
+
+    private String bookJson(Random rnd) {
+        return String.format(Locale.ROOT, "{\"name\":\"Load %08x\",\"author\":\"%s\",\"price\":\"%d.%02d\"}",
+                rnd.nextInt(), BookDataSeeder.authorName(seeder.nextAuthorRank(rnd)), 1 + rnd.nextInt(99), rnd.nextInt(100));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String gitCommit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String commit = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 && !commit.isEmpty() ? commit : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.brayden.firstrestapibooks.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects request latencies per endpoint and appends a summary line per endpoint to a CSV file.
+ * Every line carries a label (the git commit by default) so results from different commits
+ * can be put side by side.
+ * CPU per request is the process CPU time divided by the number of requests; it is only on the ALL line
+ * and includes the HTTP client, which runs in the same JVM as the server.
+ */
+@Slf4j
+public class LoadTestReport {
+    static final String HEADER = "timestamp,label,scenario,endpoint,requests,errors,throughput_rps,p50_ms,p90_ms,p99_ms,max_ms,cpu_ms_per_request";
+
+    private final String scenario;
+    private final Map<String, Samples> samplesByEndpoint = new TreeMap<>();
+    private long startNanos;
+    private long endNanos;
+    private long startCpuNanos;
+    private long endCpuNanos;
+
+    public LoadTestReport(String scenario) {
+        this.scenario = scenario;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        startCpuNanos = processCpuNanos();
+    }
+
+    public void stop() {
+        endNanos = System.nanoTime();
+        endCpuNanos = processCpuNanos();
+    }
+
+    public synchronized void record(String endpoint, long latencyNanos, boolean error) {
+        samplesByEndpoint.computeIfAbsent(endpoint, key -> new Samples()).add(latencyNanos, error);
+    }
+
+    public synchronized long totalErrors() {
+        return samplesByEndpoint.values().stream().mapToLong(samples -> samples.errors).sum();
+    }
+
+    public synchronized void appendTo(Path file, String label) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        StringBuilder lines = new StringBuilder();
+        if (!Files.exists(file)) {
+            lines.append(HEADER).append('\n');
+        }
+        double seconds = (endNanos - startNanos) / 1e9;
+        String timestamp = Instant.now().toString();
+        Samples all = new Samples();
+        samplesByEndpoint.values().forEach(all::addAll);
+        for (Map.Entry<String, Samples> entry : samplesByEndpoint.entrySet()) {
+            lines.append(line(timestamp, label, entry.getKey(), entry.getValue(), seconds, ""));
+        }
+        String cpuPerRequest = all.size == 0 || endCpuNanos < 0 ? ""
+                : String.format(Locale.ROOT, "%.3f", millis((endCpuNanos - startCpuNanos) / all.size));
+        lines.append(line(timestamp, label, "ALL", all, seconds, cpuPerRequest));
+        Files.writeString(file, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log.info("Load test results appended to {}:\n{}", file, lines);
+    }
+
+    private String line(String timestamp, String label, String endpoint, Samples samples, double seconds,
+                        String cpuPerRequest) {
+        long[] sorted = samples.sorted();
+        return String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%s%n",
+                timestamp, label, scenario, endpoint, sorted.length, samples.errors,
+                sorted.length / seconds,
+                millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                millis(percentile(sorted, 99)), millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]),
+                cpuPerRequest);
+    }
+
+    // -1 when the JVM does not report process CPU time
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    // nearest-rank percentile
+    static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latencyNanos, boolean error) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i], false);
+            }
+            errors += other.errors;
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(latencies, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.model.AuthorStats;
+import com.brayden.firstrestapibooks.model.Book;
+import com.brayden.firstrestapibooks.repository.AuthorStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthorStatsServiceImplTest {
+
+    @Mock
+    private AuthorStatsRepository authorStatsRepository;
+
+    @InjectMocks
+    private AuthorStatsServiceImpl authorStatsServiceImpl;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    // ---- findByAuthor ----
+
+    @Test
+    void testFindByAuthor_whenStatsExist_shouldReturnStatsWithAverage() {
+        AuthorStats stats = new AuthorStats();
+        stats.setAuthor("Author Name");
+        stats.setBookCount(3);
+        stats.setPricedCount(2);
+        stats.setPriceSum(new BigDecimal("21.00"));
+        stats.setMinPrice(new BigDecimal("10.00"));
+        stats.setMaxPrice(new BigDecimal("11.00"));
+
+        when(authorStatsRepository.findById("Author Name")).thenReturn(Optional.of(stats));
+
+        AuthorStatsDTO result = authorStatsServiceImpl.findByAuthor("Author Name");
+
+        assertEquals(3, result.getBookCount());
+        // the average only counts the two books that have a price
+        assertEquals("10.50", result.getAveragePrice());
+        assertEquals("10.00", result.getMinPrice());
+        assertEquals("11.00", result.getMaxPrice());
+    }
+
+    @Test
+    void testFindByAuthor_whenNoPricedBooks_shouldReturnNullPrices() {
+        AuthorStats stats = new AuthorStats();
+        stats.setAuthor("Author Name");
+        stats.setBookCount(1);
+        stats.setPriceSum(BigDecimal.ZERO);
+
+        when(authorStatsRepository.findById("Author Name")).thenReturn(Optional.of(stats));
+
+        AuthorStatsDTO result = authorStatsServiceImpl.findByAuthor("Author Name");
+
+        assertEquals(1, result.getBookCount());
+        assertNull(result.getAveragePrice());
+        assertNull(result.getMinPrice());
+    }
+
+    @Test
+    void testFindByAuthor_whenNoStats_shouldThrowApiException() {
+        when(authorStatsRepository.findById("Nonexistent Author")).thenReturn(Optional.empty());
+
+        ApiException apiException = assertThrows(ApiException.class, () -> {
+            authorStatsServiceImpl.findByAuthor("Nonexistent Author");
+        });
+        assertEquals(HttpStatus.NOT_FOUND, apiException.getHttpStatus());
+    }
+
+    // ---- bookAdded / booksAdded / bookRemoved / bookChanged ----
+
+    @Test
+    void testBookAdded_whenPriced_shouldAddOneBookWithPrice() {
+        authorStatsServiceImpl.bookAdded("Author Name", "10.999");
+
+        // prices are rounded like the DECIMAL(10, 2) column
+        BigDecimal price = new BigDecimal("11.00");
+        verify(authorStatsRepository).addBooks("Author Name", 1, 1, price, price, price);
+    }
+
+    @Test
+    void testBookAdded_whenNoAuthor_shouldDoNothing() {
+        authorStatsServiceImpl.bookAdded(null, "10");
+
+        verify(authorStatsRepository, never()).addBooks(any(), anyLong(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void testBooksAdded_whenSameAuthorTwice_shouldUpsertOncePerAuthor() {
+        Book first = new Book();
+        first.setAuthor("Author Name");
+        first.setPrice("5");
+        Book second = new Book();
+        second.setAuthor("Author Name");
+        second.setPrice("15");
+        Book unpriced = new Book();
+        unpriced.setAuthor("Other Author");
+
+        authorStatsServiceImpl.booksAdded(List.of(first, second, unpriced));
+
+        verify(authorStatsRepository).addBooks("Author Name", 2, 2, new BigDecimal("20.00"),
+                new BigDecimal("5.00"), new BigDecimal("15.00"));
+        verify(authorStatsRepository).addBooks("Other Author", 1, 0, BigDecimal.ZERO, null, null);
+    }
+
+    @Test
+    void testBookRemoved_whenPriced_shouldFlushThenRemoveAndDropEmptyRow() {
+        authorStatsServiceImpl.bookRemoved("Author Name", "10.99");
+
+        verify(authorStatsRepository).flush();
+        verify(authorStatsRepository).removeBook("Author Name", 1, new BigDecimal("10.99"));
+        verify(authorStatsRepository).deleteIfEmpty("Author Name");
+    }
+
+    @Test
+    void testBookRemoved_whenPriceIsNotANumber_shouldOnlyCountTheBook() {
+        authorStatsServiceImpl.bookRemoved("Author Name", "priceTest");
+
+        verify(authorStatsRepository).removeBook(eq("Author Name"), eq(0L), eq(BigDecimal.ZERO));
+    }
+
+    @Test
+    void testBookChanged_whenOnlyTheNameChanged_shouldNotTouchTheTable() {
+        // "100" and "100.00" are the same DECIMAL(10, 2) price
+        authorStatsServiceImpl.bookChanged("Author Name", "100", "Author Name", "100.00");
+
+        verify(authorStatsRepository, never()).removeBook(any(), anyLong(), any());
+        verify(authorStatsRepository, never()).addBooks(any(), anyLong(), anyLong(), any(), any(), any());
+        verify(authorStatsRepository, never()).flush();
+    }
+
+    @Test
+    void testBookChanged_whenPriceChanged_shouldRemoveOldAndAddNew() {
+        authorStatsServiceImpl.bookChanged("Author Name", "100", "Author Name", "150");
+
+        verify(authorStatsRepository).removeBook("Author Name", 1, new BigDecimal("100.00"));
+        BigDecimal price = new BigDecimal("150.00");
+        verify(authorStatsRepository).addBooks("Author Name", 1, 1, price, price, price);
+    }
+
+    @Test
+    void testBookChanged_whenAuthorChanged_shouldMoveTheBookBetweenAuthors() {
+        authorStatsServiceImpl.bookChanged("Old Author", "priceTest", "New Author", "priceTest");
+
+        verify(authorStatsRepository).removeBook("Old Author", 0, BigDecimal.ZERO);
+        verify(authorStatsRepository).addBooks("New Author", 1, 0, BigDecimal.ZERO, null, null);
+    }
+
+    // ---- rebuild ----
+
+    @Test
+    void testRebuild_shouldClearAndRecomputeFromBooks() {
+        when(authorStatsRepository.insertFromBooks()).thenReturn(42);
+
+        assertEquals(42, authorStatsServiceImpl.rebuild());
+
+        verify(authorStatsRepository).deleteAllRows();
+        verify(authorStatsRepository).insertFromBooks();
+    }
+}
@@ -1,27 +1,47 @@
 package com.brayden.firstrestapibooks.service.impl;
 
+import com.brayden.firstrestapibooks.dto.BookImportResultDTO;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
 import com.brayden.firstrestapibooks.dto.BookRequestDTO;
 import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.event.BookCatalogChangedEvent;
 import com.brayden.firstrestapibooks.exception.ApiException;
 import com.brayden.firstrestapibooks.model.Book;
 import com.brayden.firstrestapibooks.repository.BookRepository;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import com.brayden.firstrestapibooks.shard.BookShards;
+import com.brayden.firstrestapibooks.shard.JumpHashShardRouter;
+import com.brayden.firstrestapibooks.shard.ShardContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +51,16 @@ public class BookServiceImplTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private AuthorStatsService authorStatsService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    // A real object instead of a mock: one shard, and the work simply runs without a database transaction.
+    @Spy
+    private BookShards bookShards = BookShards.withoutTransactions(new JumpHashShardRouter(1));
+
     // Creates the class under test and injects mocked dependencies into it.
     @InjectMocks
     private BookServiceImpl bookServiceImpl;
@@ -114,6 +144,9 @@ public class BookServiceImplTest {
         assertEquals(responseDTO.getPrice(), result.getPrice());
 
         verify(bookRepository).save(any(Book.class));
+        verify(authorStatsService).bookAdded("Author Name", "10.99");
+        // lets the catalog response cache know, once the transaction commits
+        verify(eventPublisher).publishEvent(any(BookCatalogChangedEvent.class));
     }
 
     // ---- updateBook ----
@@ -157,6 +190,34 @@ public class BookServiceImplTest {
         // Verify repository methods were called as expected.
         verify(bookRepository).findById("1");
         verify(bookRepository).save(bookInRepository);
+        // the statistics move from the old author and price to the new ones
+        verify(authorStatsService).bookChanged("Original Author", "100", "Updated Author", "150");
+    }
+
+    @Test
+    void testUpdateBook_whenOnlyNameChanges_shouldPassUnchangedAuthorAndPriceToStatistics() {
+        BookRequestDTO bookRequestDTO = new BookRequestDTO();
+        bookRequestDTO.setName("Updated Name");
+        bookRequestDTO.setAuthor("Original Author");
+        bookRequestDTO.setPrice("100.00"); // the same price as "100" once it is a DECIMAL(10, 2)
+
+        Book bookInRepository = new Book();
+        bookInRepository.setId("1");
+        bookInRepository.setName("Original Name");
+        bookInRepository.setAuthor("Original Author");
+        bookInRepository.setPrice("100");
+
+        when(bookRepository.findById("1")).thenReturn(Optional.of(bookInRepository));
+        when(bookRepository.save(bookInRepository)).thenReturn(bookInRepository);
+
+        BookResponseDTO result = bookServiceImpl.updateBook("1", bookRequestDTO);
+
+        assertEquals("Updated Name", result.getName());
+        // the statistics service sees that nothing it counts changed, see AuthorStatsServiceImplTest
+        verify(authorStatsService).bookChanged("Original Author", "100", "Original Author", "100.00");
+        verify(authorStatsService, never()).bookRemoved(any(), any());
+        verify(authorStatsService, never()).bookAdded(any(), any());
+        verify(eventPublisher).publishEvent(any(BookCatalogChangedEvent.class));
     }
 
     @Test
@@ -179,6 +240,7 @@ public class BookServiceImplTest {
         assertEquals(HttpStatus.NOT_FOUND, apiException.getHttpStatus());
 
         verify(bookRepository, never()).save(any(Book.class));
+        verify(eventPublisher, never()).publishEvent(any(BookCatalogChangedEvent.class));
     }
 
     // ---- findByAuthor ----
@@ -222,25 +284,122 @@ public class BookServiceImplTest {
         verify(bookRepository).findBookByAuthor("Nonexistent Author");
     }
 
+    // ---- findByIds ----
+
+    @Test
+    void testFindByIds_whenSomeIdsExist_shouldReturnBooksInRequestOrderAndNotFoundList() {
+        Book first = new Book();
+        first.setId("1");
+        first.setName("First Book");
+        Book second = new Book();
+        second.setId("2");
+        second.setName("Second Book");
+
+        // the repository may return rows in any order
+        when(bookRepository.findAllById(List.of("2", "missing", "1"))).thenReturn(List.of(first, second));
+
+        // "2" is asked for twice but only looked up and returned once
+        BookMultiGetResponseDTO result = bookServiceImpl.findByIds(List.of("2", "missing", "1", "2"));
+
+        assertEquals(List.of("2", "1"), result.getBooks().stream().map(BookResponseDTO::getId).toList());
+        assertEquals(List.of("missing"), result.getNotFound());
+        verify(bookRepository).findAllById(List.of("2", "missing", "1"));
+    }
+
+    @Test
+    void testFindByIds_whenMoreIdsThanChunkSize_shouldQueryInChunks() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < BookServiceImpl.MULTI_GET_CHUNK_SIZE + 1; i++) {
+            ids.add(String.valueOf(i));
+        }
+        when(bookRepository.findAllById(anyList())).thenReturn(Collections.emptyList());
+
+        BookMultiGetResponseDTO result = bookServiceImpl.findByIds(ids);
+
+        assertEquals(ids, result.getNotFound());
+        verify(bookRepository).findAllById(ids.subList(0, BookServiceImpl.MULTI_GET_CHUNK_SIZE));
+        verify(bookRepository).findAllById(List.of(String.valueOf(BookServiceImpl.MULTI_GET_CHUNK_SIZE)));
+    }
+
+    @Test
+    void testFindByIds_whenIdsNameTheirShard_shouldOnlyAskOtherShardsForMisses() {
+        BookShards threeShards = BookShards.withoutTransactions(new JumpHashShardRouter(3));
+        BookServiceImpl sharded = new BookServiceImpl(bookRepository, authorStatsService, threeShards, eventPublisher);
+        String onTwo = new UUID(2L << 48 | 0x8000L, Long.MIN_VALUE).toString();   // created on shard 2 and still there
+        String movedToOne = new UUID(0x8000L, Long.MIN_VALUE).toString();        // created on shard 0, now on shard 1
+        // which shard was asked for which ids
+        Map<Integer, List<List<String>>> lookups = new ConcurrentHashMap<>();
+        when(bookRepository.findAllById(anyList())).thenAnswer(invocation -> {
+            List<String> ids = new ArrayList<>(invocation.getArgument(0));
+            int shard = ShardContext.current();
+            lookups.computeIfAbsent(shard, key -> new CopyOnWriteArrayList<>()).add(ids);
+            List<Book> books = new ArrayList<>();
+            for (String id : ids) {
+                if (id.equals(onTwo) && shard == 2 || id.equals(movedToOne) && shard == 1) {
+                    Book book = new Book();
+                    book.setId(id);
+                    books.add(book);
+                }
+            }
+            return books;
+        });
+
+        try {
+            BookMultiGetResponseDTO result = sharded.findByIds(List.of(onTwo, movedToOne, "legacy"));
+
+            assertEquals(List.of(onTwo, movedToOne), result.getBooks().stream().map(BookResponseDTO::getId).toList());
+            assertEquals(List.of("legacy"), result.getNotFound());
+            // ids without a shard are asked everywhere at once, the moved book only after shard 0 did not have it
+            assertEquals(List.of(List.of(movedToOne, "legacy")), lookups.get(0));
+            assertEquals(List.of(List.of("legacy"), List.of(movedToOne)), lookups.get(1));
+            assertEquals(List.of(List.of(onTwo, "legacy"), List.of(movedToOne)), lookups.get(2));
+        } finally {
+            threeShards.shutdown();
+        }
+    }
+
+    @Test
+    void testFindByIds_whenTooManyIds_shouldThrowApiException() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i <= BookServiceImpl.MULTI_GET_MAX_IDS; i++) {
+            ids.add(String.valueOf(i));
+        }
+
+        ApiException apiException = assertThrows(ApiException.class, () -> {
+            bookServiceImpl.findByIds(ids);
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, apiException.getHttpStatus());
+
+        verify(bookRepository, never()).findAllById(anyList());
+    }
+
     // ---- deleteBook ----
 
     @Test
     void testDeleteBook_whenBookExists_shouldDeleteBook() {
         String bookId = "1";
 
-        when(bookRepository.existsById(bookId)).thenReturn(true);
+        Book bookInRepository = new Book();
+        bookInRepository.setId(bookId);
+        bookInRepository.setName("Sample Book");
+        bookInRepository.setAuthor("Author Name");
+        bookInRepository.setPrice("10.99");
+
+        when(bookRepository.findById(bookId)).thenReturn(Optional.of(bookInRepository));
 
         // nothing to return so no way to assign it to a value
         bookServiceImpl.deleteBook(bookId);
 
         verify(bookRepository).deleteById(bookId);
+        verify(authorStatsService).bookRemoved("Author Name", "10.99");
+        verify(eventPublisher).publishEvent(any(BookCatalogChangedEvent.class));
     }
 
     @Test
     void testDeleteBook_whenBookNotFound_shouldReturnApiException(){
         String bookId = "999";
 
-        when(bookRepository.existsById(bookId)).thenReturn(false);
+        when(bookRepository.findById(bookId)).thenReturn(Optional.empty());
 
         ApiException apiException = assertThrows(ApiException.class, () -> {
             bookServiceImpl.deleteBook(bookId);
@@ -248,7 +407,70 @@ public class BookServiceImplTest {
         assertEquals("No Book found by id: " + bookId, apiException.getMessage());
         assertEquals(HttpStatus.NOT_FOUND, apiException.getHttpStatus());
 
-        verify(bookRepository).existsById(bookId);
+        verify(bookRepository).findById(bookId);
         verify(bookRepository, never()).deleteById(bookId);
+        verify(authorStatsService, never()).bookRemoved(any(), any());
+    }
+
+    // ---- importBooks ----
+
+    @Test
+    void testImportBooks_whenRowsAreValidAndInvalid_shouldInsertValidRowsAndReportInvalidOnes() {
+        String csv = """
+                name,author,price
+                Sample Book,Author Name,10.99
+                ,Author Name,5
+                Other Book,,
+                Bad Price,Author Name,ten
+                Too Many,Author Name,1,extra
+                """;
+        when(bookRepository.batchInsert(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        BookImportResultDTO result = bookServiceImpl.importBooks(stream(csv));
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(3, result.getRejected());
+        // line numbers count the header as line 1
+        assertEquals(List.of(3L, 5L, 6L), result.getErrors().stream().map(error -> error.getLine()).toList());
+        assertFalse(result.isErrorsTruncated());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Book>> chunk = ArgumentCaptor.forClass(List.class);
+        verify(bookRepository).batchInsert(chunk.capture());
+        verify(authorStatsService).booksAdded(chunk.getValue());
+        assertEquals("Sample Book", chunk.getValue().get(0).getName());
+        assertEquals("10.99", chunk.getValue().get(0).getPrice());
+        // empty author and price columns are stored as null
+        assertEquals(null, chunk.getValue().get(1).getAuthor());
+        assertEquals(null, chunk.getValue().get(1).getPrice());
+    }
+
+    @Test
+    void testImportBooks_whenMoreRowsThanChunkSize_shouldInsertInChunks() {
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 0; i < BookServiceImpl.IMPORT_CHUNK_SIZE * 2 + 1; i++) {
+            csv.append("Book ").append(i).append('\n');
+        }
+        when(bookRepository.batchInsert(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        BookImportResultDTO result = bookServiceImpl.importBooks(stream(csv.toString()));
+
+        assertEquals(BookServiceImpl.IMPORT_CHUNK_SIZE * 2 + 1, result.getAccepted());
+        verify(bookRepository, times(3)).batchInsert(anyList());
+        verify(authorStatsService, times(3)).booksAdded(anyList());
+    }
+
+    @Test
+    void testImportBooks_whenHeaderHasNoNameColumn_shouldThrowApiException() {
+        ApiException apiException = assertThrows(ApiException.class, () -> {
+            bookServiceImpl.importBooks(stream("title,author\nSample Book,Author Name\n"));
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, apiException.getHttpStatus());
+
+        verify(bookRepository, never()).batchInsert(anyList());
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,72 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CoalescingBookServiceTest {
+
+    @Mock
+    private BookServiceImpl bookServiceImpl;
+
+    private CoalescingBookService coalescingBookService;
+
+    private BookResponseDTO responseDTO;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        // built by hand because the constructor also takes the @Value settings
+        coalescingBookService = new CoalescingBookService(bookServiceImpl, true, 1000);
+
+        responseDTO = new BookResponseDTO();
+        responseDTO.setId("1");
+        responseDTO.setName("Sample Book");
+        responseDTO.setAuthor("Author Name");
+        responseDTO.setPrice("10.99");
+    }
+
+    @Test
+    void testFindByAuthor_whenCalled_shouldDelegateAndCountExecution() {
+        when(bookServiceImpl.findByAuthor("Author Name")).thenReturn(List.of(responseDTO));
+
+        List<BookResponseDTO> result = coalescingBookService.findByAuthor("Author Name");
+
+        assertEquals(List.of(responseDTO), result);
+        assertEquals(1, coalescingBookService.coalescingStats().getExecutions());
+        verify(bookServiceImpl).findByAuthor("Author Name");
+    }
+
+    @Test
+    void testFindAllBooks_whenDisabled_shouldCallDelegateDirectly() {
+        CoalescingBookService disabled = new CoalescingBookService(bookServiceImpl, false, 1000);
+        when(bookServiceImpl.findAllBooks()).thenReturn(List.of(responseDTO));
+
+        disabled.findAllBooks();
+        disabled.findAllBooks();
+
+        verify(bookServiceImpl, times(2)).findAllBooks();
+        assertEquals(0, disabled.coalescingStats().getExecutions());
+    }
+
+    @Test
+    void testCreateBook_whenCalled_shouldDelegate() {
+        BookRequestDTO bookRequestDTO = new BookRequestDTO();
+        bookRequestDTO.setName("Sample Book");
+        when(bookServiceImpl.createBook(bookRequestDTO)).thenReturn(responseDTO);
+
+        assertEquals(responseDTO, coalescingBookService.createBook(bookRequestDTO));
+
+        verify(bookServiceImpl).createBook(bookRequestDTO);
+    }
+}
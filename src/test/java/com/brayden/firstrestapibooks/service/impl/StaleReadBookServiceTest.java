@@ -0,0 +1,143 @@
+package com.brayden.firstrestapibooks.service.impl;
+
+import com.brayden.firstrestapibooks.concurrent.QueryDeadline;
+import com.brayden.firstrestapibooks.config.StaleReadProperties;
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StaleReadBookServiceTest {
+
+    @Mock
+    private CoalescingBookService coalescingBookService;
+
+    private StaleReadProperties properties;
+    private StaleReadBookService staleReadBookService;
+    private MockHttpServletRequest request;
+
+    private BookResponseDTO responseDTO;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        properties = new StaleReadProperties();
+        properties.setEnabled(true);
+        properties.setSoftTimeoutMs(100);
+        staleReadBookService = new StaleReadBookService(coalescingBookService, properties);
+
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        responseDTO = new BookResponseDTO();
+        responseDTO.setId("1");
+        responseDTO.setName("Sample Book");
+        responseDTO.setAuthor("Author Name");
+        responseDTO.setPrice("10.99");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        staleReadBookService.shutdown();
+    }
+
+    @Test
+    void testFindByAuthor_whenDatabaseFails_shouldServeLastGoodResultAndMarkItStale() {
+        when(coalescingBookService.findByAuthor("Author Name"))
+                .thenReturn(List.of(responseDTO))
+                .thenThrow(new IllegalStateException("database down"));
+
+        staleReadBookService.findByAuthor("Author Name");
+        List<BookResponseDTO> result = staleReadBookService.findByAuthor("Author Name");
+
+        assertEquals(List.of(responseDTO), result);
+        assertEquals(1, staleReadBookService.staleReadStats().getStale());
+        assertEquals("error", request.getAttribute(
+                "com.brayden.firstrestapibooks.cache.StaleResponseAdvice.reason"));
+    }
+
+    @Test
+    void testFindByAuthor_shouldGiveTheQueriesADeadline() {
+        AtomicReference<Long> deadline = new AtomicReference<>();
+        when(coalescingBookService.findByAuthor("Author Name")).thenAnswer(invocation -> {
+            deadline.set(QueryDeadline.current());
+            return List.of(responseDTO);
+        });
+
+        staleReadBookService.findByAuthor("Author Name");
+
+        assertNotNull(deadline.get());
+        assertTrue(deadline.get() - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(properties.getRefreshTimeoutMs()));
+    }
+
+    @Test
+    void testFindAllBooks_whenCatalogLargerThanMaxBooks_shouldStillKeepIt() {
+        properties.setMaxBooks(1);
+        StaleReadBookService small = new StaleReadBookService(coalescingBookService, properties);
+        List<BookResponseDTO> catalog = List.of(responseDTO, new BookResponseDTO(), new BookResponseDTO());
+        when(coalescingBookService.findAllBooks())
+                .thenReturn(catalog)
+                .thenThrow(new IllegalStateException("database down"));
+
+        small.findAllBooks();
+        List<BookResponseDTO> result = small.findAllBooks();
+
+        assertEquals(catalog, result);
+        assertEquals(3, small.staleReadStats().getCatalogBooks());
+        assertEquals(0, small.staleReadStats().getOversized());
+        small.shutdown();
+    }
+
+    @Test
+    void testFindByAuthor_whenNotInAWebRequest_shouldAlwaysAskTheDatabase() {
+        when(coalescingBookService.findByAuthor("Author Name"))
+                .thenReturn(List.of(responseDTO))
+                .thenThrow(new IllegalStateException("database down"));
+        staleReadBookService.findByAuthor("Author Name");
+
+        // e.g. the catalog response cache rebuild: an old result could not be marked stale there
+        RequestContextHolder.resetRequestAttributes();
+
+        assertThrows(IllegalStateException.class, () -> staleReadBookService.findByAuthor("Author Name"));
+        assertEquals(0, staleReadBookService.staleReadStats().getStale());
+    }
+
+    @Test
+    void testFindAllBooks_whenNothingStored_shouldThrowTheFailure() {
+        when(coalescingBookService.findAllBooks()).thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(IllegalStateException.class, () -> staleReadBookService.findAllBooks());
+    }
+
+    @Test
+    void testFindAllBooks_whenDisabled_shouldCallDelegateDirectly() {
+        properties.setEnabled(false);
+        StaleReadBookService disabled = new StaleReadBookService(coalescingBookService, properties);
+        when(coalescingBookService.findAllBooks()).thenReturn(List.of(responseDTO));
+
+        disabled.findAllBooks();
+        disabled.findAllBooks();
+
+        verify(coalescingBookService, times(2)).findAllBooks();
+        assertEquals(0, disabled.staleReadStats().getEntries());
+        disabled.shutdown();
+    }
+}
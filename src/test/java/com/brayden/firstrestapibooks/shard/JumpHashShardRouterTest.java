@@ -0,0 +1,63 @@
+package com.brayden.firstrestapibooks.shard;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JumpHashShardRouterTest {
+
+    @Test
+    void testShardFor_shouldBeStableAcrossRouters() {
+        // the placement must not depend on the JVM run, otherwise books could not be found after a restart
+        JumpHashShardRouter router = new JumpHashShardRouter(8);
+        JumpHashShardRouter other = new JumpHashShardRouter(8);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(router.shardFor("Author " + i), other.shardFor("Author " + i));
+        }
+        assertEquals(router.shardFor(""), router.shardFor(null));
+    }
+
+    @Test
+    void testShardFor_whenOneShard_shouldAlwaysReturnZero() {
+        JumpHashShardRouter router = new JumpHashShardRouter(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, router.shardFor("Author " + i));
+        }
+    }
+
+    @Test
+    void testShardFor_shouldSpreadAuthorsEvenly() {
+        JumpHashShardRouter router = new JumpHashShardRouter(4);
+        int[] counts = new int[4];
+        for (int i = 0; i < 40_000; i++) {
+            counts[router.shardFor("Author " + i)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 9_000 && count < 11_000, "uneven shard: " + count);
+        }
+    }
+
+    @Test
+    void testShardFor_whenShardAdded_shouldOnlyMoveAuthorsToTheNewShard() {
+        JumpHashShardRouter before = new JumpHashShardRouter(3);
+        JumpHashShardRouter after = new JumpHashShardRouter(4);
+        int moved = 0;
+        for (int i = 0; i < 40_000; i++) {
+            int oldShard = before.shardFor("Author " + i);
+            int newShard = after.shardFor("Author " + i);
+            if (oldShard != newShard) {
+                assertEquals(3, newShard);
+                moved++;
+            }
+        }
+        // about a quarter of the authors belong on the fourth shard
+        assertTrue(moved > 9_000 && moved < 11_000, "moved: " + moved);
+    }
+
+    @Test
+    void testConstructor_whenNoShards_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new JumpHashShardRouter(0));
+    }
+}
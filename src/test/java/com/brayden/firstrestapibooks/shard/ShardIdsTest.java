@@ -0,0 +1,48 @@
+package com.brayden.firstrestapibooks.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ShardIdsTest {
+
+    @AfterEach
+    void tearDown() {
+        ShardContext.set(null);
+    }
+
+    @Test
+    void testNewId_shouldBeAVersion8UuidThatKeepsTheShard() {
+        for (int shard : new int[]{0, 1, 7, 0xFFFF}) {
+            String id = ShardIds.newId(shard);
+
+            UUID uuid = UUID.fromString(id);
+            assertEquals(8, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertEquals(shard, ShardIds.shardOf(id));
+        }
+        assertNotEquals(ShardIds.newId(3), ShardIds.newId(3));
+    }
+
+    @Test
+    void testNewId_shouldUseTheCurrentShard() {
+        ShardContext.set(5);
+
+        assertEquals(5, ShardIds.shardOf(ShardIds.newId()));
+    }
+
+    @Test
+    void testNewId_whenNoShard_shouldBeARandomUuid() {
+        assertEquals(4, UUID.fromString(ShardIds.newId()).version());
+    }
+
+    @Test
+    void testShardOf_whenIdCarriesNoShard_shouldReturnMinusOne() {
+        assertEquals(-1, ShardIds.shardOf(UUID.randomUUID().toString()));
+        assertEquals(-1, ShardIds.shardOf("missing"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.brayden.firstrestapibooks.shard;
+
+import com.brayden.firstrestapibooks.dto.AuthorStatsDTO;
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.dto.ShardRebalanceResultDTO;
+import com.brayden.firstrestapibooks.dto.ShardStatsDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.service.ShardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The three H2 shards of ShardingIntegrationTest, started the way a rebalance has to run: with book writes turned off.
+@ActiveProfiles("shards")
+@SpringBootTest(properties = "books.sharding.read-only=true")
+public class ShardRebalanceIntegrationTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private AuthorStatsService authorStatsService;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private BookShards bookShards;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // one author per shard
+    private final String[] authors = new String[3];
+
+    @BeforeEach
+    void setup() {
+        bookShards.onEveryShard(() -> {
+            jdbcTemplate.update("DELETE FROM book");
+            jdbcTemplate.update("DELETE FROM author_stats");
+            return null;
+        });
+        for (int i = 0; authors[0] == null || authors[1] == null || authors[2] == null; i++) {
+            authors[bookShards.shardFor("Author " + i)] = "Author " + i;
+        }
+    }
+
+    @Test
+    void testWrites_whenReadOnly_shouldBeRejected() {
+        BookRequestDTO request = new BookRequestDTO();
+        request.setName("New");
+        request.setAuthor(authors[0]);
+
+        ApiException apiException = assertThrows(ApiException.class, () -> bookService.createBook(request));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, apiException.getHttpStatus());
+        assertTrue(bookService.findAllBooks().isEmpty());
+    }
+
+    @Test
+    void testRebalance_shouldMoveMisplacedBooksToTheirAuthorsShard() {
+        // books written while there were fewer shards: everything landed on shard 0
+        for (int i = 0; i < 5; i++) {
+            insertOnShard(0, UUID.randomUUID().toString(), authors[1], "1" + i + ".00");
+            insertOnShard(0, UUID.randomUUID().toString(), authors[2], "2" + i + ".00");
+        }
+        int wrongShardWithoutAuthor = bookShards.shardFor(null) == 1 ? 2 : 1;
+        String withoutAuthor = UUID.randomUUID().toString();
+        insertOnShard(wrongShardWithoutAuthor, withoutAuthor, null, null);
+        countAuthorStats(0);
+
+        List<ShardStatsDTO> before = shardService.findShardStats();
+        assertEquals(10, before.get(0).getBooks());
+        assertEquals(2, before.get(0).getMisplacedAuthors());
+        assertEquals(1, before.get(wrongShardWithoutAuthor).getMisplacedAuthors()); // the book without an author
+
+        ShardRebalanceResultDTO result = shardService.rebalance();
+
+        assertEquals(3, result.getAuthorsMoved());
+        assertEquals(11, result.getBooksMoved());
+        assertEquals(0, result.getCopiesRemoved());
+        List<ShardStatsDTO> after = shardService.findShardStats();
+        after.forEach(shard -> assertEquals(0, shard.getMisplacedAuthors()));
+        assertEquals(0, after.get(0).getBooks());
+        assertEquals(5, bookService.findByAuthor(authors[1]).size());
+        assertEquals(bookShards.shardFor(null), shardOf(withoutAuthor));
+
+        AuthorStatsDTO stats = authorStatsService.findByAuthor(authors[2]);
+        assertEquals(5, stats.getBookCount());
+        assertEquals("20.00", stats.getMinPrice());
+        assertEquals("24.00", stats.getMaxPrice());
+        assertEquals(2, authorStatsService.findAll().size()); // the old rows on shard 0 are gone
+
+        // nothing left to do the second time
+        assertEquals(0, shardService.rebalance().getBooksMoved());
+    }
+
+    @Test
+    void testRebalance_whenMoveOfABookWasInterrupted_shouldRemoveTheSecondCopy() {
+        // an update moved the book from shard 0 to authors[2]'s shard and died before deleting it on shard 0
+        String id = ShardIds.newId(0);
+        insertOnShard(0, id, authors[0], "10.00");
+        insertOnShard(2, id, authors[2], "15.00");
+        countAuthorStats(0);
+        countAuthorStats(2);
+
+        ShardRebalanceResultDTO result = shardService.rebalance();
+
+        // the update never committed, and the copy on the id's own shard is the one updates and deletes use
+        assertEquals(1, result.getCopiesRemoved());
+        assertEquals(0, shardOf(id));
+        assertEquals(1, authorStatsService.findByAuthor(authors[0]).getBookCount());
+        assertThrows(ApiException.class, () -> authorStatsService.findByAuthor(authors[2]));
+    }
+
+    private void insertOnShard(int shard, String id, String author, String price) {
+        bookShards.onShard(shard, () ->
+                jdbcTemplate.update("INSERT INTO book (id, name, author, price) VALUES (?, ?, ?, ?)", id, "Old", author, price));
+    }
+
+    // the statistics the inserts above bypassed
+    private void countAuthorStats(int shard) {
+        bookShards.onShard(shard, () ->
+                jdbcTemplate.update("INSERT INTO author_stats (author, book_count, priced_count, price_sum, min_price, max_price)"
+                        + " SELECT author, COUNT(*), COUNT(price), SUM(price), MIN(price), MAX(price) FROM book GROUP BY author"));
+    }
+
+    // the shard the book's row is on, -1 when it is on none
+    private int shardOf(String id) {
+        List<Integer> counts = bookShards.onEveryShard(() ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book WHERE id = ?", Integer.class, id));
+        assertTrue(counts.stream().mapToInt(Integer::intValue).sum() <= 1, "book is on more than one shard");
+        return counts.indexOf(1);
+    }
+}
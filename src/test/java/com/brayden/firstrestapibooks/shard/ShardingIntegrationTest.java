@@ -0,0 +1,215 @@
+package com.brayden.firstrestapibooks.shard;
+
+import com.brayden.firstrestapibooks.concurrent.QueryDeadline;
+import com.brayden.firstrestapibooks.dto.BookMultiGetResponseDTO;
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.dto.BookResponseDTO;
+import com.brayden.firstrestapibooks.exception.ApiException;
+import com.brayden.firstrestapibooks.service.AuthorStatsService;
+import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.service.ShardService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the whole application on three embedded H2 databases (see application-shards.properties).
+@ActiveProfiles("shards")
+@SpringBootTest
+public class ShardingIntegrationTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private AuthorStatsService authorStatsService;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private BookShards bookShards;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // one author per shard
+    private final String[] authors = new String[3];
+
+    @BeforeEach
+    void setup() {
+        bookShards.onEveryShard(() -> {
+            jdbcTemplate.update("DELETE FROM book");
+            jdbcTemplate.update("DELETE FROM author_stats");
+            return null;
+        });
+        for (int i = 0; authors[0] == null || authors[1] == null || authors[2] == null; i++) {
+            authors[bookShards.shardFor("Author " + i)] = "Author " + i;
+        }
+    }
+
+    @Test
+    void testShardCount_shouldMatchConfiguredShards() {
+        assertEquals(3, bookShards.shardCount());
+    }
+
+    @Test
+    void testCreateBook_shouldOnlyWriteToTheAuthorsShard() {
+        BookResponseDTO first = bookService.createBook(request("First", authors[0], "10.00"));
+        BookResponseDTO second = bookService.createBook(request("Second", authors[1], "20.00"));
+        BookResponseDTO third = bookService.createBook(request("Third", authors[2], "30.00"));
+
+        assertEquals(0, shardOf(first.getId()));
+        assertEquals(1, shardOf(second.getId()));
+        assertEquals(2, shardOf(third.getId()));
+        // the id remembers its shard, so updates and deletes only have to ask that one
+        assertEquals(2, ShardIds.shardOf(third.getId()));
+
+        assertEquals(3, bookService.findAllBooks().size());
+        assertEquals("Second", bookService.findByAuthor(authors[1]).get(0).getName());
+        assertEquals(List.of(third.getId(), first.getId()),
+                bookService.findByIds(List.of(third.getId(), first.getId())).getBooks().stream()
+                        .map(BookResponseDTO::getId).toList());
+        assertEquals("20.00", authorStatsService.findByAuthor(authors[1]).getMaxPrice());
+        assertEquals(3, authorStatsService.findAll().size());
+    }
+
+    @Test
+    void testUpdateBook_whenAuthorOnAnotherShard_shouldMoveBookAndKeepId() {
+        BookResponseDTO created = bookService.createBook(request("Moving", authors[0], "10.00"));
+
+        BookResponseDTO updated = bookService.updateBook(created.getId(), request("Moved", authors[2], "15.00"));
+
+        assertEquals(created.getId(), updated.getId());
+        assertEquals(2, shardOf(created.getId()));
+        assertEquals("Moved", bookService.findByIds(List.of(created.getId())).getBooks().get(0).getName());
+        assertTrue(bookService.findByAuthor(authors[0]).isEmpty());
+        assertThrows(ApiException.class, () -> authorStatsService.findByAuthor(authors[0]));
+        assertEquals("15.00", authorStatsService.findByAuthor(authors[2]).getMinPrice());
+
+        // the id still names shard 0, the other shards are asked when it is not there
+        bookService.deleteBook(created.getId());
+        assertEquals(-1, shardOf(created.getId()));
+    }
+
+    @Test
+    void testUpdateBook_whenIdFromBeforeSharding_shouldFindTheBook() {
+        String id = insertOnShard(bookShards.shardFor(authors[1]), authors[1], null);
+
+        bookService.updateBook(id, request("Updated", authors[1], "11.00"));
+
+        assertEquals(1, shardOf(id));
+        assertEquals("Updated", bookService.findByAuthor(authors[1]).get(0).getName());
+    }
+
+    @Test
+    void testUpdateBook_whenAuthorOnSameShard_shouldUpdateInPlace() {
+        BookResponseDTO created = bookService.createBook(request("Staying", authors[1], "10.00"));
+
+        bookService.updateBook(created.getId(), request("Stayed", authors[1], "12.00"));
+
+        assertEquals(1, shardOf(created.getId()));
+        assertEquals("Stayed", bookService.findByAuthor(authors[1]).get(0).getName());
+        assertEquals("12.00", authorStatsService.findByAuthor(authors[1]).getMaxPrice());
+    }
+
+    @Test
+    void testDeleteBook_shouldFindTheBooksShard() {
+        BookResponseDTO created = bookService.createBook(request("Deleted", authors[2], "10.00"));
+
+        bookService.deleteBook(created.getId());
+
+        assertEquals(-1, shardOf(created.getId()));
+        ApiException apiException = assertThrows(ApiException.class, () -> bookService.deleteBook(created.getId()));
+        assertEquals(HttpStatus.NOT_FOUND, apiException.getHttpStatus());
+    }
+
+    @Test
+    void testFindAllBooks_whenBookOnTwoShards_shouldListItOnce() {
+        // what moveBook leaves for a moment, or for good if the application dies between its two commits
+        String id = ShardIds.newId(0);
+        insertOnShard(0, id, authors[0], "10.00");
+        insertOnShard(2, id, authors[2], "15.00");
+
+        assertEquals(List.of(id), bookService.findAllBooks().stream().map(BookResponseDTO::getId).toList());
+        assertEquals(1, bookService.findByIds(List.of(id)).getBooks().size());
+    }
+
+    @Test
+    void testFindByIds_whenBookMovedOrFromBeforeSharding_shouldLookBeyondTheIdsShard() {
+        BookResponseDTO moved = bookService.createBook(request("Moving", authors[0], "10.00"));
+        bookService.updateBook(moved.getId(), request("Moved", authors[1], "10.00"));
+        String old = insertOnShard(2, authors[2], null);
+        BookResponseDTO staying = bookService.createBook(request("Staying", authors[2], "10.00"));
+
+        BookMultiGetResponseDTO result = bookService.findByIds(List.of(staying.getId(), moved.getId(), old, "missing"));
+
+        assertEquals(List.of(staying.getId(), moved.getId(), old), result.getBooks().stream().map(BookResponseDTO::getId).toList());
+        assertEquals(List.of("missing"), result.getNotFound());
+    }
+
+    @Test
+    void testRebalance_whenNotReadOnly_shouldRefuse() {
+        ApiException apiException = assertThrows(ApiException.class, () -> shardService.rebalance());
+
+        assertEquals(HttpStatus.CONFLICT, apiException.getHttpStatus());
+    }
+
+    @Test
+    void testOnEveryShard_whenQueryDeadlineSet_shouldGiveEveryShardTransactionATimeout() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        List<Boolean> timeouts = QueryDeadline.callWith(deadline, () -> bookShards.onEveryShard(() ->
+                bookShards.inShardTransaction(bookShards.currentShard(), () -> {
+                    EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+                    return holder.hasTimeout() && holder.getTimeToLiveInSeconds() <= 5;
+                })));
+
+        assertEquals(List.of(true, true, true), timeouts);
+    }
+
+    private BookRequestDTO request(String name, String author, String price) {
+        BookRequestDTO request = new BookRequestDTO();
+        request.setName(name);
+        request.setAuthor(author);
+        request.setPrice(price);
+        return request;
+    }
+
+    // a book with an id from before sharding
+    private String insertOnShard(int shard, String author, String price) {
+        String id = UUID.randomUUID().toString();
+        insertOnShard(shard, id, author, price);
+        return id;
+    }
+
+    private void insertOnShard(int shard, String id, String author, String price) {
+        bookShards.onShard(shard, () ->
+                jdbcTemplate.update("INSERT INTO book (id, name, author, price) VALUES (?, ?, ?, ?)", id, "Old", author, price));
+    }
+
+    // the shard the book's row is on, -1 when it is on none
+    private int shardOf(String id) {
+        List<Integer> counts = bookShards.onEveryShard(() ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book WHERE id = ?", Integer.class, id));
+        assertTrue(counts.stream().mapToInt(Integer::intValue).sum() <= 1, "book is on more than one shard");
+        return counts.indexOf(1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.brayden.firstrestapibooks.timing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestTimingTest {
+
+    @Test
+    void testToServerTimingHeader_shouldListEveryPhaseInMilliseconds() {
+        RequestTiming timing = new RequestTiming();
+        timing.addPool(TimeUnit.MICROSECONDS.toNanos(500));
+        timing.addSql(TimeUnit.MILLISECONDS.toNanos(3));
+        timing.addSql(TimeUnit.MILLISECONDS.toNanos(2));
+        timing.addHydrate(TimeUnit.MILLISECONDS.toNanos(4), 10);
+        timing.addMap(TimeUnit.MILLISECONDS.toNanos(1));
+
+        String header = timing.toServerTimingHeader();
+
+        assertTrue(header.startsWith("pool;dur=0.50;desc=\"connection wait\", db;dur=5.00;desc=\"SQL\", "
+                + "tx;dur=0.00;desc=\"begin/commit\", hydrate;dur=4.00;desc=\"entities\", "
+                + "map;dur=1.00;desc=\"MapperBook\", app;dur="), header);
+        assertFalse(header.contains("ser;"), header);
+    }
+
+    @Test
+    void testToServerTimingHeader_whenEndGiven_shouldAddSerialization() {
+        RequestTiming timing = new RequestTiming();
+        timing.markHandlerEnd();
+
+        String header = timing.toServerTimingHeader(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2));
+
+        assertTrue(header.contains(", app;dur="), header);
+        assertTrue(header.matches(".*, ser;dur=2\\.\\d\\d;desc=\"JSON\"$"), header);
+    }
+
+    @Test
+    void testTimeSql_shouldCountAStatementOnlyInsideARequest() {
+        RequestTiming timing = new RequestTiming();
+
+        assertEquals(1, RequestTiming.timeSql(() -> 1));
+        RequestTiming.callWith(timing, () -> RequestTiming.timeSql(() -> 2));
+
+        assertTrue(timing.toLogFields(System.nanoTime()).contains("statements=1 "));
+    }
+
+    @Test
+    void testTimeTransaction_shouldLeaveOutTheSqlTheListenerCounted() {
+        RequestTiming timing = new RequestTiming();
+
+        RequestTiming.callWith(timing, () -> {
+            RequestTiming.timeTransaction(() -> timing.addSql(TimeUnit.SECONDS.toNanos(1)));
+            return null;
+        });
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), timing.sqlNanos());
+        assertTrue(timing.txNanos() < TimeUnit.SECONDS.toNanos(1), "tx=" + timing.txNanos());
+    }
+
+    @Test
+    void testToLogFields_shouldCountStatementsAndRows() {
+        RequestTiming timing = new RequestTiming();
+        timing.addSql(1);
+        timing.addSql(1);
+        timing.addHydrate(1, 7);
+        timing.markHandlerEnd();
+
+        String fields = timing.toLogFields(System.nanoTime());
+
+        assertTrue(fields.contains("statements=2 rows=7"), fields);
+        assertTrue(fields.contains("serialize_ms="), fields);
+    }
+
+    @Test
+    void testCallWith_shouldRestoreThePreviousTiming() {
+        RequestTiming timing = new RequestTiming();
+
+        RequestTiming inside = RequestTiming.callWith(timing, RequestTiming::current);
+
+        assertSame(timing, inside);
+        assertNull(RequestTiming.current());
+        assertEquals("done", RequestTiming.callWith(null, () -> "done"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.brayden.firstrestapibooks.timing;
+
+import com.brayden.firstrestapibooks.dto.BookRequestDTO;
+import com.brayden.firstrestapibooks.service.BookService;
+import com.brayden.firstrestapibooks.shard.BookShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Uses the embedded shards profile, so the timing of work done on the shard threads is covered too.
+// log-threshold-ms=0 logs every request.
+@ExtendWith(OutputCaptureExtension.class)
+@ActiveProfiles("shards")
+@SpringBootTest(properties = {"books.server-timing.enabled=true", "books.server-timing.log-threshold-ms=0"})
+@AutoConfigureMockMvc
+public class ServerTimingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookShards bookShards;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        bookShards.onEveryShard(() -> {
+            jdbcTemplate.update("DELETE FROM book");
+            jdbcTemplate.update("DELETE FROM author_stats");
+            return null;
+        });
+        for (int i = 0; i < 3; i++) {
+            BookRequestDTO book = new BookRequestDTO();
+            book.setName("Book " + i);
+            book.setAuthor("Author " + i);
+            book.setPrice("1" + i + ".00");
+            bookService.createBook(book);
+        }
+    }
+
+    @Test
+    void testFindAllBooks_shouldSendServerTimingAndLogPhases(CapturedOutput output) throws Exception {
+        mockMvc.perform(get("/books"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("db;dur=")))
+                .andExpect(header().string("Server-Timing", containsString("hydrate;dur=")))
+                .andExpect(header().string("Server-Timing", containsString("tx;dur=")))
+                .andExpect(header().string("Server-Timing", containsString("map;dur=")))
+                // the small body is still in the response buffer, so the header is replaced with one that has "ser"
+                .andExpect(header().string("Server-Timing", containsString("ser;dur=")));
+
+        // one SELECT per shard, every book counted once
+        assertTrue(output.getOut().contains("request-timing method=GET path=/books status=200 reason=slow"), output.getOut());
+        assertTrue(output.getOut().contains("statements=3 rows=3"), output.getOut());
+    }
+
+    @Test
+    void testImportBooks_shouldCountTheJdbcTemplateInsertAndTheStatsUpsert(CapturedOutput output) throws Exception {
+        mockMvc.perform(post("/books/import").contentType("text/csv").content("name,author,price\nImported,Author 0,9.99\n"))
+                .andExpect(status().isOk());
+
+        // the batch INSERT runs through JdbcTemplate, the author_stats upsert through Hibernate
+        assertTrue(output.getOut().contains("request-timing method=POST path=/books/import status=200 reason=slow"),
+                output.getOut());
+        assertTrue(output.getOut().contains("statements=2 rows=0"), output.getOut());
+    }
+
+    @Test
+    void testDeleteBook_whenNoBody_shouldStillSendServerTiming() throws Exception {
+        mockMvc.perform(delete("/books/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().exists("Server-Timing"));
+    }
+}